@@ -0,0 +1,310 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * AdmissionController limits how much CPU-bound search work runs at once. Work is run on
+ * a fixed number of threads per priority, behind a bounded queue. When a queue is full,
+ * new work is rejected at once; work that waited in the queue for longer than its
+ * deadline is rejected when its turn comes instead of being run for a caller that has
+ * likely given up. Either way the caller gets a RejectedExecutionException, which should
+ * be answered with HTTP 503 and a Retry-After header.
+ *
+ * Cheap requests should not go through an AdmissionController at all, so that they stay
+ * fast however busy the search threads are. NORMAL work, such as single routes, gets as
+ * many threads as there are cores; LOW work, such as alternative routes, multi-stop plans
+ * and route overlay tiles, gets a quarter of them, so a burst of heavy requests cannot
+ * crowd out the rest.
+ */
+public final class AdmissionController {
+
+    /**
+     * Priority is how important a kind of work is; each priority has its own threads and
+     * queue
+     */
+    public enum Priority {
+        /** interactive work that should be answered quickly */
+        NORMAL,
+        /** expensive work that may be throttled first */
+        LOW
+    }
+
+    /** the threads and queue of every priority, indexed by ordinal */
+    private final Lane[] lanes;
+
+    // Abstract Function:
+    // Each AdmissionController a runs work of priority p on the threads of a.lanes[p.ordinal()].
+    //
+    // Rep Invariant:
+    // lanes != null && lanes.length == Priority.values().length && no lane is null
+
+    /**
+     * @param threads the number of threads that run NORMAL work
+     * @param queueLength the largest number of NORMAL requests that may wait for a thread
+     * @param maxQueueMillis how long a request may wait for a thread, in milliseconds
+     * @spec.requires {@code threads > 0 && queueLength > 0 && maxQueueMillis >= 0}
+     * @spec.effects Constructs an AdmissionController with "threads" threads and a queue of
+     *               "queueLength" for NORMAL work, and a quarter as many of each for LOW work
+     */
+    public AdmissionController(int threads, int queueLength, long maxQueueMillis) {
+        if (threads <= 0 || queueLength <= 0 || maxQueueMillis < 0) {
+            throw new IllegalArgumentException("threads and queueLength should be positive "
+                    + "and maxQueueMillis should not be negative");
+        }
+        long maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+        this.lanes = new Lane[Priority.values().length];
+        lanes[Priority.NORMAL.ordinal()] = new Lane(Priority.NORMAL, threads, queueLength,
+                maxQueueNanos);
+        lanes[Priority.LOW.ordinal()] = new Lane(Priority.LOW, Math.max(1, threads / 4),
+                Math.max(1, queueLength / 4), maxQueueNanos);
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (lanes != null);
+        assert (lanes.length == Priority.values().length);
+    }
+
+    /**
+     * Run work on the threads of a priority and wait for its result
+     * @param priority the priority of the work
+     * @param work the work to run
+     * @throws RejectedExecutionException if the queue of "priority" is full, or the work
+     * waited in it for too long
+     * @return the result of "work"
+     */
+    public <T> @Nullable T call(Priority priority, Supplier<@Nullable T> work) {
+        return lanes[priority.ordinal()].call(work);
+    }
+
+    /**
+     * Return the counters of every priority
+     * @return a List of the Stats of every priority, in the order of Priority.values()
+     */
+    public List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            result.add(lane.getStats());
+        }
+        return result;
+    }
+
+    /**
+     * Lane is the threads and queue of one priority
+     */
+    private static final class Lane {
+
+        /** the priority of the work run here */
+        private final Priority priority;
+
+        /** runs the work */
+        private final ThreadPoolExecutor executor;
+
+        /** how long work may wait in the queue, in nanoseconds */
+        private final long maxQueueNanos;
+
+        /** the number of calls whose work ran */
+        private final LongAdder admitted = new LongAdder();
+
+        /** the number of calls rejected because the queue was full */
+        private final LongAdder rejected = new LongAdder();
+
+        /** the number of calls rejected because their work waited too long */
+        private final LongAdder expired = new LongAdder();
+
+        /**
+         * @param priority the priority of the work run here
+         * @param threads the number of threads
+         * @param queueLength the capacity of the queue
+         * @param maxQueueNanos how long work may wait in the queue, in nanoseconds
+         * @spec.effects Constructs a Lane with daemon threads and an empty queue
+         */
+        Lane(Priority priority, int threads, int queueLength, long maxQueueNanos) {
+            this.priority = priority;
+            this.maxQueueNanos = maxQueueNanos;
+            AtomicInteger created = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, "search-" + priority.name().toLowerCase()
+                        + "-" + created.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueLength), factory,
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        /**
+         * Run work on this lane and wait for its result
+         * @param work the work to run
+         * @throws RejectedExecutionException if the queue is full or the work waited too long
+         * @return the result of "work"
+         */
+        <T> @Nullable T call(Supplier<@Nullable T> work) {
+            long queued = System.nanoTime();
+            Future<T> future;
+            try {
+                future = executor.submit(() -> {
+                    if (System.nanoTime() - queued > maxQueueNanos) {
+                        expired.increment();
+                        throw new RejectedExecutionException("Server too busy, waited "
+                                + "too long for a search thread");
+                    }
+                    admitted.increment();
+                    return work.get();
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw new RejectedExecutionException("Server too busy, too many searches "
+                        + "waiting");
+            }
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for a search");
+            }
+        }
+
+        /**
+         * Return the counters of this lane
+         * @return a Stats of this lane
+         */
+        Stats getStats() {
+            return new Stats(priority, executor.getMaximumPoolSize(), executor.getActiveCount(),
+                    executor.getQueue().size(), admitted.sum(), rejected.sum(), expired.sum());
+        }
+    }
+
+    /**
+     * Stats is an immutable snapshot of the counters of one priority
+     */
+    public static final class Stats {
+
+        /** the priority counted */
+        private final Priority priority;
+
+        /** the number of threads */
+        private final int threads;
+
+        /** the number of threads running work */
+        private final int active;
+
+        /** the number of requests waiting */
+        private final int queued;
+
+        /** the number of requests whose work ran */
+        private final long admitted;
+
+        /** the number of requests rejected because the queue was full */
+        private final long rejected;
+
+        /** the number of requests rejected because they waited too long */
+        private final long expired;
+
+        // Abstract Function:
+        // Each Stats s describes the threads and queue of priority s.priority when it was
+        // taken, and the counts of its requests up to then.
+        //
+        // Rep Invariant:
+        // priority != null && every count >= 0
+
+        /**
+         * @param priority the priority counted
+         * @param threads the number of threads
+         * @param active the number of threads running work
+         * @param queued the number of requests waiting
+         * @param admitted the number of requests whose work ran
+         * @param rejected the number of requests rejected because the queue was full
+         * @param expired the number of requests rejected because they waited too long
+         * @spec.effects Constructs a Stats with the given counts
+         */
+        Stats(Priority priority, int threads, int active, int queued, long admitted,
+              long rejected, long expired) {
+            this.priority = priority;
+            this.threads = threads;
+            this.active = active;
+            this.queued = queued;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.expired = expired;
+        }
+
+        /**
+         * Return the priority counted
+         * @return the priority these counters are of
+         */
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * Return the number of threads
+         * @return the number of threads that run work of this priority
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Return the number of threads running work
+         * @return the number of busy threads when this was taken
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * Return the number of requests waiting
+         * @return the number of queued requests when this was taken
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * Return the number of requests whose work ran
+         * @return the number of admitted requests
+         */
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        /**
+         * Return the number of requests rejected because the queue was full
+         * @return the number of requests turned away on arrival
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Return the number of requests rejected because they waited too long
+         * @return the number of requests that missed their queue deadline
+         */
+        public long getExpired() {
+            return expired;
+        }
+    }
+}
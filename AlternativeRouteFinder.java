@@ -0,0 +1,202 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.*;
+
+/**
+ * AlternativeRouteFinder finds up to k meaningfully different routes between two nodes of
+ * a CompactGraph. The routes are "via-node" alternatives: each one is the
+ * shortest path from the start to some via node followed by the shortest path from that
+ * via node to the destination. A single forward tree from the start and a single backward
+ * tree to the destination are enough to evaluate every via node, so asking for more routes
+ * costs no extra searches.
+ */
+public class AlternativeRouteFinder<N> {
+
+    /** the graph routes are found in */
+    private final CompactGraph<N> graph;
+
+    /** the workspaces the forward and backward trees borrow */
+    private final SearchWorkspacePool pool;
+
+    // Abstract Function:
+    // Each AlternativeRouteFinder f finds alternative routes in f.graph.
+    //
+    // Rep Invariant:
+    // graph != null && pool != null
+
+    /**
+     * Constructs a finder for the given graph
+     * @param graph the graph routes are found in
+     * @param pool the pool searches borrow workspaces from, made for "graph"
+     * @spec.requires {@code graph != null && pool != null}
+     * @spec.effects Constructs a new AlternativeRouteFinder
+     */
+    public AlternativeRouteFinder(CompactGraph<N> graph, SearchWorkspacePool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (graph != null);
+        assert (pool != null);
+    }
+
+    /**
+     * Return up to k loopless routes from start to destination. The first route is the
+     * shortest path; every other route is at most (1 + maxStretch) times as long as the
+     * shortest path and shares at most maxOverlap of the shortest path's length with the
+     * routes before it.
+     * @param start the node the routes start from
+     * @param destination the node the routes end at
+     * @param k the largest number of routes to return
+     * @param maxStretch how much longer than the shortest path an alternative may be, as
+     *                   a fraction of the shortest path's length
+     * @param maxOverlap how much of the shortest path's length an alternative may share
+     *                   with the routes already chosen, as a fraction
+     * @spec.requires {@code graph.contains(start) && graph.contains(destination) && k >= 1 &&
+     *                maxStretch >= 0 && 0 <= maxOverlap <= 1}
+     * @return a List of routes ordered by length, each a List of edges in walking order.
+     * The List is empty if destination cannot be reached from start
+     */
+    public List<List<Graph<N, Double>.Edge>> findRoutes(N start, N destination, int k,
+                                                        double maxStretch, double maxOverlap) {
+        checkRep();
+        if (k < 1 || maxStretch < 0 || maxOverlap < 0 || maxOverlap > 1) {
+            throw new IllegalArgumentException();
+        }
+        List<List<Graph<N, Double>.Edge>> routes = new ArrayList<>();
+
+        try (ShortestPathTree<N> forward = ShortestPathTree.from(graph, pool, start);
+             ShortestPathTree<N> backward = ShortestPathTree.to(graph, pool, destination)) {
+            if (!forward.searchTo(destination)) {
+                return routes;
+            }
+            List<Graph<N, Double>.Edge> shortest = forward.getPath(destination);
+            routes.add(shortest);
+            if (k == 1 || start.equals(destination)) {
+                return routes;
+            }
+
+            // Only via nodes inside the stretch limit can make acceptable routes, so both
+            // trees stop there. The forward tree picks up where the first search stopped.
+            double best = forward.getDistance(destination);
+            double limit = best * (1 + maxStretch);
+            forward.searchWithin(limit);
+            backward.searchWithin(limit);
+
+            List<Candidate<N>> candidates = new ArrayList<>();
+            for (int i = 0; i < forward.getSettledCount(); i++) {
+                N via = forward.getSettledNode(i);
+                double length = forward.getDistance(via) + backward.getDistance(via);
+                if (length <= limit && !via.equals(start) && !via.equals(destination)) {
+                    candidates.add(new Candidate<>(via, length));
+                }
+            }
+            Collections.sort(candidates);
+
+            Set<N> used = new HashSet<>();
+            Set<Graph<N, Double>.Edge> chosenEdges = new HashSet<>();
+            addRoute(shortest, used, chosenEdges);
+
+            for (Candidate<N> candidate : candidates) {
+                if (routes.size() >= k) {
+                    break;
+                }
+                // a via node on a chosen route leads back to (a variant of) that route
+                if (used.contains(candidate.via)) {
+                    continue;
+                }
+                List<Graph<N, Double>.Edge> route = viaRoute(forward, backward, candidate.via);
+                if (route == null) {
+                    continue;
+                }
+                double shared = 0.0;
+                for (Graph<N, Double>.Edge e : route) {
+                    if (chosenEdges.contains(e)) {
+                        shared += e.getLabel();
+                    }
+                }
+                if (shared <= maxOverlap * best) {
+                    routes.add(route);
+                    addRoute(route, used, chosenEdges);
+                }
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Return the route through "via" made of the two tree paths, or null if the two paths
+     * meet anywhere other than "via"
+     * @param forward the tree grown from the start
+     * @param backward the tree grown to the destination
+     * @param via the via node
+     * @spec.requires "via" is settled in both trees
+     * @return the concatenated route, or null if it contains a loop
+     */
+    private @Nullable List<Graph<N, Double>.Edge> viaRoute(ShortestPathTree<N> forward,
+                                                           ShortestPathTree<N> backward, N via) {
+        List<Graph<N, Double>.Edge> toVia = forward.getPath(via);
+        List<Graph<N, Double>.Edge> fromVia = backward.getPath(via);
+        Set<N> visited = new HashSet<>();
+        visited.add(forward.getRoot());
+        for (Graph<N, Double>.Edge e : toVia) {
+            visited.add(e.getDestination());
+        }
+        for (Graph<N, Double>.Edge e : fromVia) {
+            if (!visited.add(e.getDestination())) {
+                return null;
+            }
+        }
+        List<Graph<N, Double>.Edge> route = new ArrayList<>(toVia.size() + fromVia.size());
+        route.addAll(toVia);
+        route.addAll(fromVia);
+        return route;
+    }
+
+    /**
+     * Record the nodes and edges of a chosen route
+     * @param route the chosen route
+     * @param used the nodes of all chosen routes
+     * @param chosenEdges the edges of all chosen routes
+     * @spec.modifies used, chosenEdges
+     * @spec.effects adds the nodes and edges of "route" to "used" and "chosenEdges"
+     */
+    private void addRoute(List<Graph<N, Double>.Edge> route, Set<N> used,
+                          Set<Graph<N, Double>.Edge> chosenEdges) {
+        for (Graph<N, Double>.Edge e : route) {
+            used.add(e.getStart());
+            used.add(e.getDestination());
+            chosenEdges.add(e);
+        }
+    }
+
+    /**
+     * Candidate is a via node together with the length of the route through it
+     */
+    private static final class Candidate<N> implements Comparable<Candidate<N>> {
+
+        /** the via node */
+        private final N via;
+
+        /** the length of the route through via */
+        private final double length;
+
+        /**
+         * @param via the via node
+         * @param length the length of the route through "via"
+         * @spec.effects Constructs a new Candidate
+         */
+        Candidate(N via, double length) {
+            this.via = via;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Candidate<N> other) {
+            return Double.compare(this.length, other.length);
+        }
+    }
+}
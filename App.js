@@ -9,6 +9,11 @@ import MenuItem from '@material-ui/core/MenuItem';
 import * as fetch from "node-fetch";
 import campusMap from './campus_map.jpg';
 
+// how far, in map pixels (the canvas draws the map at full size, so one map pixel is one
+// canvas pixel), a drawn route may stray from the real one; much less than the width of
+// the route line, so the difference is invisible
+const ROUTE_TOLERANCE = 2;
+
 class App extends React.Component {
     state = {
         buildings: [],
@@ -28,6 +33,7 @@ class App extends React.Component {
 
     submitInfo = event => {
         fetch('http://localhost:8080/buildingLocation?start=' + this.state.startBuilding + '&end=' + this.state.endBuilding
+            + '&tolerance=' + ROUTE_TOLERANCE
         ).then(res => {
             return res.json()
         }).then(j =>
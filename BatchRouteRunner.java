@@ -0,0 +1,267 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * BatchRouteRunner answers a large number of route requests without interaction, for
+ * offline analysis of logged requests. It reads one request per line, a start and an end
+ * building separated by a tab, a comma or spaces, from a file or standard input. Requests
+ * are resolved in batches on all cores and the results are written in input order, through
+ * a buffered writer, as TSV or as JSON lines. Empty lines and lines starting with "#" are
+ * skipped. A throughput and latency summary is printed to standard error at the end.
+ *
+ * Every result has the start, the end, a status ("ok", "unknown start", "unknown end" or
+ * "no path"), the length of the shortest path in feet and its number of edges.
+ */
+public class BatchRouteRunner {
+    // No abstract function because it only has static methods
+
+    /** the number of requests read and resolved together */
+    private static final int BATCH_SIZE = 4096;
+
+    /** the size of the input and output buffers, in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Run a batch from the command line arguments that follow "--batch"
+     * @param model the model to answer the requests with
+     * @param args the options: [input file or "-"] [--format tsv|jsonl] [--output file]
+     *             [--threads n]
+     * @throws IOException if the input cannot be read or the output cannot be written
+     */
+    public static void run(CampusMapModel model, List<String> args) throws IOException {
+        String input = "-";
+        String output = "-";
+        boolean json = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.equals("--format") && i + 1 < args.size()) {
+                String format = args.get(++i);
+                if (!format.equals("tsv") && !format.equals("jsonl")) {
+                    throw new IllegalArgumentException("Unknown format: " + format);
+                }
+                json = format.equals("jsonl");
+            } else if (arg.equals("--output") && i + 1 < args.size()) {
+                output = args.get(++i);
+            } else if (arg.equals("--threads") && i + 1 < args.size()) {
+                threads = Integer.parseInt(args.get(++i));
+                if (threads < 1) {
+                    throw new IllegalArgumentException("--threads should be positive");
+                }
+            } else if (!arg.startsWith("--")) {
+                input = arg;
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (BufferedReader reader = new BufferedReader(input.equals("-")
+                     ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                     : new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8),
+                     BUFFER_SIZE);
+             Writer writer = new BufferedWriter(output.equals("-")
+                     ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                     : new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8),
+                     BUFFER_SIZE)) {
+            Summary summary = run(model, reader, writer, json, pool);
+            writer.flush();
+            System.err.printf("%d requests in %.3f s on %d threads: %.0f requests/s%n",
+                    summary.latencies.count(), summary.nanos / 1e9, threads,
+                    summary.latencies.count() / Math.max(summary.nanos / 1e9, 1e-9));
+            System.err.println("ok: " + summary.found + ", unknown buildings: "
+                    + summary.unknown + ", no path: " + summary.unreachable);
+            System.err.println("latency: " + summary.latencies.summary());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Answer every request read from "reader" and write the results to "writer"
+     * @param model the model to answer the requests with
+     * @param reader where the requests are read from
+     * @param writer where the results are written to, in input order
+     * @param json true to write JSON lines, false to write TSV
+     * @param pool the pool the requests are resolved on
+     * @throws IOException if reading or writing fails
+     * @return the counts, total time and latencies of the requests
+     */
+    static Summary run(CampusMapModel model, BufferedReader reader, Writer writer,
+                       boolean json, ForkJoinPool pool) throws IOException {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        if (!json) {
+            writer.write("start\tend\tstatus\tdistance\tedges\n");
+        }
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            batch.add(line);
+            if (batch.size() == BATCH_SIZE) {
+                resolve(model, batch, writer, json, pool, summary);
+                batch.clear();
+            }
+        }
+        resolve(model, batch, writer, json, pool, summary);
+        summary.nanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * Resolve a batch of requests in parallel and write their results in order
+     * @param model the model to answer the requests with
+     * @param batch the request lines
+     * @param writer where the results are written to
+     * @param json true to write JSON lines, false to write TSV
+     * @param pool the pool the requests are resolved on
+     * @param summary the summary the requests are counted in
+     * @spec.modifies summary
+     * @throws IOException if writing fails
+     */
+    private static void resolve(CampusMapModel model, List<String> batch, Writer writer,
+                                boolean json, ForkJoinPool pool, Summary summary)
+            throws IOException {
+        String[] results = new String[batch.size()];
+        int[] statuses = new int[batch.size()];
+        pool.submit(() -> IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            long begin = System.nanoTime();
+            StringBuilder result = new StringBuilder(96);
+            statuses[i] = answer(model, batch.get(i), json, result);
+            summary.latencies.record(System.nanoTime() - begin);
+            results[i] = result.toString();
+        })).join();
+        for (int i = 0; i < results.length; i++) {
+            writer.write(results[i]);
+            if (statuses[i] == Summary.FOUND) {
+                summary.found++;
+            } else if (statuses[i] == Summary.UNKNOWN) {
+                summary.unknown++;
+            } else {
+                summary.unreachable++;
+            }
+        }
+    }
+
+    /**
+     * Answer one request
+     * @param model the model to answer the request with
+     * @param request a start and an end building separated by a tab, a comma or spaces
+     * @param json true to write a JSON line, false to write a TSV line
+     * @param result where the result line is appended
+     * @spec.modifies result
+     * @return Summary.FOUND, Summary.UNKNOWN or Summary.UNREACHABLE
+     */
+    private static int answer(CampusMapModel model, String request, boolean json,
+                              StringBuilder result) {
+        String[] names = request.split(request.indexOf('\t') >= 0 ? "\t"
+                : request.indexOf(',') >= 0 ? "," : "\\s+", 2);
+        String start = names[0].trim();
+        String end = names.length > 1 ? names[1].trim() : "";
+        String status;
+        double distance = 0.0;
+        int edges = 0;
+        int outcome;
+        if (model.findBuilding(start) == null) {
+            status = "unknown start";
+            outcome = Summary.UNKNOWN;
+        } else if (model.findBuilding(end) == null) {
+            status = "unknown end";
+            outcome = Summary.UNKNOWN;
+        } else {
+            List<Graph<Coordinates, Double>.Edge> path = model.findPath(start, end);
+            if (path == null) {
+                status = "no path";
+                outcome = Summary.UNREACHABLE;
+            } else {
+                status = "ok";
+                outcome = Summary.FOUND;
+                for (Graph<Coordinates, Double>.Edge e : path) {
+                    distance += e.getLabel();
+                }
+                edges = path.size();
+            }
+        }
+
+        if (json) {
+            result.append("{\"start\":");
+            appendJsonString(result, start);
+            result.append(",\"end\":");
+            appendJsonString(result, end);
+            result.append(",\"status\":\"").append(status).append('"');
+            if (outcome == Summary.FOUND) {
+                result.append(",\"distance\":").append(distance)
+                        .append(",\"edges\":").append(edges);
+            }
+            result.append("}\n");
+        } else {
+            result.append(start.replace('\t', ' ')).append('\t')
+                    .append(end.replace('\t', ' ')).append('\t').append(status).append('\t');
+            if (outcome == Summary.FOUND) {
+                result.append(distance).append('\t').append(edges);
+            } else {
+                result.append('\t');
+            }
+            result.append('\n');
+        }
+        return outcome;
+    }
+
+    /**
+     * Append a string as a quoted JSON string
+     * @param s where to append
+     * @param value the string to append
+     * @spec.modifies s
+     */
+    private static void appendJsonString(StringBuilder s, String value) {
+        s.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                s.append('\\').append(c);
+            } else if (c < 0x20) {
+                s.append(String.format("\\u%04x", (int) c));
+            } else {
+                s.append(c);
+            }
+        }
+        s.append('"');
+    }
+
+    /**
+     * Summary collects the outcome counts, total time and latencies of a batch run
+     */
+    static final class Summary {
+
+        /** the outcome of a request whose path was found */
+        static final int FOUND = 0;
+
+        /** the outcome of a request naming an unknown building */
+        static final int UNKNOWN = 1;
+
+        /** the outcome of a request between buildings that are not connected */
+        static final int UNREACHABLE = 2;
+
+        /** the time every request took to resolve */
+        final LatencyHistogram latencies = new LatencyHistogram();
+
+        /** the number of requests whose path was found */
+        long found;
+
+        /** the number of requests naming an unknown building */
+        long unknown;
+
+        /** the number of requests between buildings that are not connected */
+        long unreachable;
+
+        /** the time the whole run took, in nanoseconds */
+        long nanos;
+    }
+}
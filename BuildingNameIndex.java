@@ -0,0 +1,266 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.*;
+
+/**
+ * BuildingNameIndex finds buildings by name. Exact short and long names are looked up in
+ * a hash table. For typeahead, the normalized short name, long name and every word of the
+ * long name of each building are kept in one sorted array, so the names starting with a
+ * prefix are found by binary search. Optionally, prefixes within one edit (an inserted,
+ * deleted, replaced or swapped character) of the query match too. Normalizing lower-cases
+ * a name and turns every run of other characters than letters and digits into one space.
+ */
+public final class BuildingNameIndex {
+
+    /** the rank of a match on the whole short name */
+    private static final int EXACT_SHORT = 0;
+
+    /** the rank of a match on the whole long name */
+    private static final int EXACT_LONG = 1;
+
+    /** the rank of a match on the start of the short name */
+    private static final int SHORT_PREFIX = 2;
+
+    /** the rank of a match on the start of the long name */
+    private static final int LONG_PREFIX = 3;
+
+    /** the rank of a match on the start of a later word of the long name */
+    private static final int WORD_PREFIX = 4;
+
+    /** added to the rank of a match that needed an edit of the query */
+    private static final int FUZZY_PENALTY = 5;
+
+    /** the building of every exact short or long name */
+    private final Map<String, Building> byName;
+
+    /** the indexed buildings */
+    private final Building[] buildings;
+
+    /** the normalized names, sorted */
+    private final String[] keys;
+
+    /** the position in buildings of the building of every key */
+    private final int[] owners;
+
+    /** the rank of a prefix match on every key */
+    private final int[] ranks;
+
+    /** every character that appears in a key, for generating edits of queries */
+    private final char[] alphabet;
+
+    // Abstract Function:
+    // Each BuildingNameIndex i indexes the buildings i.buildings. A building is found by
+    // name if byName maps the name to it, and for every 0 <= j < keys.length, keys[j] is a
+    // normalized name of buildings[owners[j]] that prefix matches rank ranks[j].
+    //
+    // Rep Invariant:
+    // all fields != null && keys is sorted &&
+    // keys, owners and ranks have the same length && every owner < buildings.length
+
+    /**
+     * @param buildings the buildings to index, in the order ties are broken in
+     * @spec.requires {@code buildings != null}
+     * @spec.effects Constructs an index of the names of "buildings"
+     */
+    public BuildingNameIndex(Collection<Building> buildings) {
+        this.buildings = buildings.toArray(new Building[0]);
+        this.byName = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<int[]> entries = new ArrayList<>();
+        for (int b = 0; b < this.buildings.length; b++) {
+            Building building = this.buildings[b];
+            byName.putIfAbsent(building.getShortName(), building);
+            byName.putIfAbsent(building.getLongName(), building);
+            names.add(normalize(building.getShortName()));
+            entries.add(new int[] {b, SHORT_PREFIX});
+            String longName = normalize(building.getLongName());
+            names.add(longName);
+            entries.add(new int[] {b, LONG_PREFIX});
+            for (int i = longName.indexOf(' '); i >= 0; i = longName.indexOf(' ', i + 1)) {
+                names.add(longName.substring(i + 1));
+                entries.add(new int[] {b, WORD_PREFIX});
+            }
+        }
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(names::get));
+        this.keys = new String[order.length];
+        this.owners = new int[order.length];
+        this.ranks = new int[order.length];
+        SortedSet<Character> characters = new TreeSet<>();
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = names.get(order[i]);
+            owners[i] = entries.get(order[i])[0];
+            ranks[i] = entries.get(order[i])[1];
+            for (char c : keys[i].toCharArray()) {
+                characters.add(c);
+            }
+        }
+        this.alphabet = new char[characters.size()];
+        int j = 0;
+        for (char c : characters) {
+            alphabet[j++] = c;
+        }
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (byName != null && buildings != null && alphabet != null);
+        assert (keys.length == owners.length && keys.length == ranks.length);
+    }
+
+    /**
+     * Return the building with the given abbrev. name or full name
+     * @param name the exact name to look up
+     * @return the first indexed Building for which equalsName(name) is true, or null if
+     * there is none
+     */
+    public @Nullable Building find(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Return the buildings whose names best complete the given text. Whole names rank
+     * before prefixes, short names before long names, and the start of a name before the
+     * start of a later word in it; if "fuzzy", prefixes one edit away from "text" also
+     * match, after all exact prefixes. Ties are broken by the order the buildings were
+     * indexed in.
+     * @param text what the user has typed so far
+     * @param k the largest number of buildings to return
+     * @param fuzzy whether to match prefixes one edit away from "text"
+     * @spec.requires {@code k >= 0}
+     * @return up to k different Buildings, best match first; empty if "text" has no
+     * letters or digits
+     */
+    public List<Building> complete(String text, int k, boolean fuzzy) {
+        String query = normalize(text);
+        if (query.isEmpty() || k <= 0) {
+            return new ArrayList<>();
+        }
+        int[] best = new int[buildings.length];
+        Arrays.fill(best, Integer.MAX_VALUE);
+        int found = collect(query, 0, best);
+        // fuzzy matches rank after every exact one, so they only matter if there are too few
+        if (fuzzy && found < k) {
+            for (String edit : edits(query)) {
+                collect(edit, FUZZY_PENALTY, best);
+            }
+        }
+
+        List<Integer> matches = new ArrayList<>();
+        for (int b = 0; b < buildings.length; b++) {
+            if (best[b] != Integer.MAX_VALUE) {
+                matches.add(b);
+            }
+        }
+        matches.sort(Comparator.<Integer>comparingInt(b -> best[b]).thenComparingInt(b -> b));
+        List<Building> result = new ArrayList<>(Math.min(k, matches.size()));
+        for (int i = 0; i < matches.size() && i < k; i++) {
+            result.add(buildings[matches.get(i)]);
+        }
+        return result;
+    }
+
+    /**
+     * Lower the best rank of every building with a key starting with "prefix". A short or
+     * long name that is all of "prefix" ranks as a whole name rather than a prefix.
+     * @param prefix a normalized prefix
+     * @param penalty added to the rank of every match
+     * @param best the best rank found so far of every building
+     * @spec.modifies best
+     * @return the number of buildings with such a key that had no rank before
+     */
+    private int collect(String prefix, int penalty, int[] best) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int found = 0;
+        for (int i = low; i < keys.length && keys[i].startsWith(prefix); i++) {
+            if (best[owners[i]] == Integer.MAX_VALUE) {
+                found++;
+            }
+            int rank = ranks[i];
+            if (keys[i].length() == prefix.length()) {
+                if (rank == SHORT_PREFIX) {
+                    rank = EXACT_SHORT;
+                } else if (rank == LONG_PREFIX) {
+                    rank = EXACT_LONG;
+                }
+            }
+            best[owners[i]] = Math.min(best[owners[i]], rank + penalty);
+        }
+        return found;
+    }
+
+    /**
+     * Return every string one edit away from the given one, using the characters of the
+     * keys for insertions and replacements
+     * @param query a normalized string
+     * @return the strings made by deleting, inserting or replacing one character of
+     * "query", or swapping two adjacent ones
+     */
+    private Set<String> edits(String query) {
+        Set<String> result = new HashSet<>();
+        StringBuilder s = new StringBuilder(query.length() + 1);
+        for (int i = 0; i <= query.length(); i++) {
+            if (i < query.length()) {
+                s.setLength(0);
+                result.add(s.append(query, 0, i).append(query, i + 1, query.length())
+                        .toString());
+                if (i + 1 < query.length()) {
+                    s.setLength(0);
+                    result.add(s.append(query, 0, i).append(query.charAt(i + 1))
+                            .append(query.charAt(i)).append(query, i + 2, query.length())
+                            .toString());
+                }
+            }
+            for (char c : alphabet) {
+                s.setLength(0);
+                result.add(s.append(query, 0, i).append(c).append(query, i, query.length())
+                        .toString());
+                if (i < query.length() && c != query.charAt(i)) {
+                    s.setLength(0);
+                    result.add(s.append(query, 0, i).append(c)
+                            .append(query, i + 1, query.length()).toString());
+                }
+            }
+        }
+        result.remove("");
+        result.remove(query);
+        return result;
+    }
+
+    /**
+     * Return the normalized form of a name
+     * @param name the name
+     * @return "name" in lower case, with every run of characters other than letters and
+     * digits replaced by one space and no space at either end
+     */
+    static String normalize(String name) {
+        StringBuilder s = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && s.length() > 0) {
+                    s.append(' ');
+                }
+                s.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return s.toString();
+    }
+}
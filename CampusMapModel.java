@@ -4,6 +4,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * CampusMapModel is the model of CampusMap MVC. It stores information about the buildings
@@ -12,23 +17,71 @@ import java.util.*;
  */
 public class CampusMapModel {
 
-    /** the collection of all paths on campus */
-    private Graph<Coordinates, Double> campusMap;
+    /** maps with at least this many path nodes answer reachability queries in parallel */
+    private static final int PARALLEL_SEARCH_NODES = 100_000;
+
+    /** the paths of the campus map loaded by the constructor without arguments */
+    public static final String CAMPUS_PATHS = "src/main/java/hw8/data/campus_paths.tsv";
+
+    /** the buildings of the campus map loaded by the constructor without arguments */
+    public static final String CAMPUS_BUILDINGS = "src/main/java/hw8/data/campus_buildings.tsv";
+
+    /** about how many bytes the model takes for every path node */
+    private static final long NODE_BYTES = 250;
+
+    /** about how many bytes the model takes for every path edge */
+    private static final long EDGE_BYTES = 48;
+
+    /** about how many bytes the model takes for every building */
+    private static final long BUILDING_BYTES = 400;
+
+    /** how many threads help the request threads build the trees of multi-stop plans */
+    private static final int PLANNING_THREADS =
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+
+    /** how many tree builders may wait for a planning thread before more are rejected */
+    private static final int PLANNING_QUEUE_LENGTH = 64;
+
+    /** the threads, shared by every model, that help build the trees of multi-stop plans */
+    private static final ThreadPoolExecutor PLANNING_EXECUTOR = planningExecutor();
+
+    /** the Graph the edges made by this model, rather than found in searchGraph, belong to */
+    private final Graph<Coordinates, Double> edgeFactory = new Graph<>();
 
     /** the collection of all buildings in alphabetical order */
     private Set<Building> buildings;
 
-    /** the start point client assigns through view/controller */
-    private Building start = new Building("", "", new Coordinates(0, 0));
+    /** looks buildings up by name and completes partial names */
+    private BuildingNameIndex names;
+
+    /** the collection of all paths on campus, laid out for searching */
+    private CompactGraph<Coordinates> searchGraph;
+
+    /** the reusable search state for searchGraph */
+    private SearchWorkspacePool workspaces;
+
+    /** the parallel search used for reachability queries on large maps */
+    private DeltaSteppingSearch<Coordinates> parallelSearch;
+
+    /** finds alternative routes in searchGraph */
+    private AlternativeRouteFinder<Coordinates> alternatives;
+
+    /** plans walks through several buildings in searchGraph */
+    private MultiStopPlanner<Coordinates> planner;
 
-    /** the end point client assigns through view/controller */
-    private Building end = new Building("", "", new Coordinates(0, 0));
+    /** the weakly and strongly connected components of searchGraph */
+    private ConnectedComponents<Coordinates> components;
+
+    /** turns paths of searchGraph into turn-by-turn directions */
+    private Directions directions;
+
+    /** the buildings outside the largest strongly connected component of searchGraph */
+    private List<Building> isolatedBuildings;
 
     // Abstract Function:
     // Each CampusMapModel = {a Graph represents the location and length of all the possible paths,
-    //                        a Set of Buildings represents the name and location of all the buildings,
-    //                        a Building represents the start point and a Building represents the end
-    //                        point of the shortest path the client tries to find}
+    //                        a Set of Buildings represents the name and location of all the buildings}
+    // It keeps no state of any query, so that many threads can query it at once.
     // Rep Invariant:
     // None of the fields can be null
 
@@ -39,21 +92,102 @@ public class CampusMapModel {
      * "campus_paths.tsv" and the buildings information in "campus_buildings.tsv"
      */
     public CampusMapModel() {
-        campusMap = CampusPathsParser.parseData("src/main/java/hw8/data/campus_paths.tsv");
+        this(CAMPUS_PATHS, CAMPUS_BUILDINGS);
+    }
+
+    /**
+     * Constructs a new CampusMapModel of the map in the given files
+     * @param pathsFile the paths file, in the format of "campus_paths.tsv"
+     * @param buildingsFile the buildings file, in the format of "campus_buildings.tsv"
+     * @spec.effects Constructs a new CampusMapModel that contains the paths information in
+     * "pathsFile" and the buildings information in "buildingsFile"
+     */
+    public CampusMapModel(String pathsFile, String buildingsFile) {
+        searchGraph = CampusPathsParser.parseCompactData(pathsFile);
         Set<Building> buildingsOrdered = new TreeSet<>(new Comparator<Building>() {
             @Override
             public int compare(Building b1, Building b2) {
                 return b1.getShortName().compareTo(b2.getShortName());
             }
         });
-        buildingsOrdered.addAll(CampusBuildingsParser.parseData("src/main/java/hw8/data/campus_buildings.tsv"));
+        buildingsOrdered.addAll(CampusBuildingsParser.parseData(buildingsFile));
         buildings = buildingsOrdered;
+        names = new BuildingNameIndex(buildings);
+        workspaces = new SearchWorkspacePool(searchGraph.nodeCount());
+        parallelSearch = new DeltaSteppingSearch<>(searchGraph, ForkJoinPool.commonPool(),
+                DeltaSteppingSearch.defaultDelta(searchGraph));
+        alternatives = new AlternativeRouteFinder<>(searchGraph, workspaces);
+        planner = new MultiStopPlanner<>(searchGraph, workspaces, PLANNING_EXECUTOR,
+                PLANNING_THREADS + 1);
+        directions = new Directions(searchGraph);
+        components = new ConnectedComponents<>(searchGraph);
+        int mainComponent = components.getLargestStrongComponent();
+        isolatedBuildings = new ArrayList<>();
+        for (Building building : buildings) {
+            if (components.getStrongComponent(building.getLocation()) != mainComponent) {
+                isolatedBuildings.add(building);
+            }
+        }
     }
 
     /** Check if the rep invariant holds */
     private void checkRep() {
-        assert (campusMap != null);
         assert (buildings != null);
+        assert (names != null);
+        assert (searchGraph != null);
+        assert (workspaces != null);
+        assert (parallelSearch != null);
+        assert (alternatives != null);
+        assert (planner != null);
+        assert (directions != null);
+        assert (components != null);
+        assert (isolatedBuildings != null);
+    }
+
+    /**
+     * Make the executor that helps build the trees of multi-stop plans
+     * @return an executor of PLANNING_THREADS daemon threads that rejects work once
+     * PLANNING_QUEUE_LENGTH tasks are waiting
+     */
+    private static ThreadPoolExecutor planningExecutor() {
+        AtomicInteger created = new AtomicInteger();
+        return new ThreadPoolExecutor(PLANNING_THREADS, PLANNING_THREADS, 0,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(PLANNING_QUEUE_LENGTH), r -> {
+                    Thread thread = new Thread(r, "multi-stop-planner-" + created.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Return about how much memory this model takes, for deciding which maps to keep
+     * loaded. The estimate grows with the numbers of path nodes, path edges and buildings.
+     * @return the estimated size of this model, in bytes
+     */
+    public long estimatedBytes() {
+        return NODE_BYTES * searchGraph.nodeCount() + EDGE_BYTES * searchGraph.edgeCount()
+                + BUILDING_BYTES * buildings.size();
+    }
+
+    /**
+     * Return the building whose abbrev. name or full name is the given name
+     * @param name the name to look up
+     * @return the Building called "name", or null if there is no such building
+     */
+    public @Nullable Building findBuilding(String name) {
+        return this.names.find(name);
+    }
+
+    /**
+     * Return the buildings whose names best complete the given text, for typeahead
+     * @param text what the user has typed so far
+     * @param k the largest number of buildings to return
+     * @param fuzzy whether to also match names one typo away from "text"
+     * @spec.requires {@code k >= 0}
+     * @return up to k Buildings, best match first
+     */
+    public List<Building> autocomplete(String text, int k, boolean fuzzy) {
+        return this.names.complete(text, k, fuzzy);
     }
 
     /**
@@ -65,172 +199,266 @@ public class CampusMapModel {
      * @return a List of Graph.Edges representing the path from start to destination
      * with the lowest weight
      */
-    // "minDestination" is guaranteed to be in the graph since the it is retrieved from the children
-    // of some nodes in the graph
-    // and the cases where "start" and/or "destination" is not in the graph are handled beforehand
-    @SuppressWarnings("keyfor")
     public @Nullable List<Graph<Coordinates, Double>.Edge> findPath(String start,
                                                                     String destination) {
-        List<Graph<Coordinates, Double>.Edge> shortestPath = new ArrayList<>();
-
         // check if start and destination are both names of buildings
         // if not, return Edges containing negative lengths
-        boolean startExists = false;
-        boolean destinationExists = false;
-        Coordinates startLocation = new Coordinates(0,0);
-        Coordinates destinationLocation = new Coordinates(0,0);
-        for (Building building : this.buildings) {
-            if (building.equalsName(start)) {
-                this.start = building;
-                startExists = true;
-                startLocation = building.getLocation();
-            }
-            if (building.equalsName(destination)) {
-                this.end = building;
-                destinationExists = true;
-                destinationLocation = building.getLocation();
-            }
-        }
-        if (!startExists || !destinationExists) {
-            if (!startExists) {
-                shortestPath.add(0, campusMap.new Edge(new Coordinates(0,0), new Coordinates(0,0),
+        Building startBuilding = this.findBuilding(start);
+        Building destinationBuilding = this.findBuilding(destination);
+        if (startBuilding == null || destinationBuilding == null) {
+            List<Graph<Coordinates, Double>.Edge> shortestPath = new ArrayList<>();
+            if (startBuilding == null) {
+                shortestPath.add(0, edgeFactory.new Edge(new Coordinates(0,0), new Coordinates(0,0),
                             -1.0));
             }
-            if (!destinationExists) {
+            if (destinationBuilding == null) {
                 if (shortestPath.size() == 0) {
-                    shortestPath.add(0, campusMap.new Edge(new Coordinates(0,0), new Coordinates(0,0),
+                    shortestPath.add(0, edgeFactory.new Edge(new Coordinates(0,0), new Coordinates(0,0),
                             0.0));
                 }
-                shortestPath.add(1, campusMap.new Edge(new Coordinates(0,0), new Coordinates(0,0),
+                shortestPath.add(1, edgeFactory.new Edge(new Coordinates(0,0), new Coordinates(0,0),
                                 -1.0));
             }
             return shortestPath;
         }
+        Coordinates startLocation = startBuilding.getLocation();
+        Coordinates destinationLocation = destinationBuilding.getLocation();
 
         // base case: the start node
         // Do no more checking if start is the destination
         if (start.equals(destination)) {
-            return shortestPath;
+            return new ArrayList<>();
         }
 
-        PriorityQueue<List<Graph<Coordinates, Double>.Edge>> active =
-                new PriorityQueue<>(new Comparator<List<Graph<Coordinates, Double>.Edge>>() {
-                    @Override
-                    public int compare(List<Graph<Coordinates, Double>.Edge> path1,
-                                       List<Graph<Coordinates, Double>.Edge> path2) {
-                        if (path1.equals(path2)) {
-                            return 0;
-                        } else {
-                            double totalWeight1 = 0.0;
-                            for (Graph<Coordinates, Double>.Edge path : path1) {
-                                totalWeight1 += path.getLabel();
-                            }
-                            double totalWeight2 = 0.0;
-                            for (Graph<Coordinates, Double>.Edge path : path2) {
-                                totalWeight2 += path.getLabel();
-                            }
-                            if (totalWeight1 > totalWeight2) {
-                                return 1;
-                            } else {
-                                return -1;
-                            }
-                        }
-                    }
-                });
-
-        Set<Coordinates> finished = new HashSet<>();
-
-        // If start is not the destination, add the path from start to each of its children
-        // to active
-        for (Graph<Coordinates, Double>.Edge pathFromStart : campusMap.getEdgesFromANode(startLocation)) {
-            List<Graph<Coordinates, Double>.Edge> newPath = new ArrayList<>();
-            newPath.add(pathFromStart);
-            active.add(newPath);
+        // buildings in different components can never be connected, so don't search
+        if (!components.mayReach(startLocation, destinationLocation)) {
+            return null;
         }
-        finished.add(startLocation);
-
-        // other cases:
-        while (!active.isEmpty()) {
-            // minPath is the lowest-cost path in active and is the
-            // minimum-cost path to some node
-            List<Graph<Coordinates, Double>.Edge> minPath = active.remove();
-            Coordinates minDestination = minPath.get(minPath.size() - 1).getDestination();
 
-            if (minDestination.equals(destinationLocation)) {
-                return minPath;
+        // Dijkstra's algorithm on a pooled workspace: the only allocation is the result
+        try (ShortestPathTree<Coordinates> tree =
+                     ShortestPathTree.from(searchGraph, workspaces, startLocation)) {
+            if (tree.searchTo(destinationLocation)) {
+                return tree.getPath(destinationLocation);
             }
+        }
+        return null;
+    }
+
+    /**
+     * Return the shortest path from start to destination with its geometry simplified, so
+     * that no point of the full path is more than "tolerance" from the returned one. The
+     * tolerance is measured in the units of the Coordinates, map pixels, and not in the
+     * feet the edges are labeled with. Every returned edge is labeled with the total length of the path edges it stands
+     * for, so the length of the path does not change.
+     * @param start the starting point
+     * @param destination the goal start wants to reach
+     * @param tolerance the largest distance, in map pixels, between the full and the
+     *                  simplified path
+     * @spec.requires {@code tolerance >= 0}
+     * @return a List of Graph.Edges as for findPath(start, destination), simplified if
+     * both buildings are known and a path was found
+     */
+    public @Nullable List<Graph<Coordinates, Double>.Edge> findSimplifiedPath(String start,
+                                                                              String destination,
+                                                                              double tolerance) {
+        List<Graph<Coordinates, Double>.Edge> path = this.findPath(start, destination);
+        if (path == null || tolerance <= 0 || this.findBuilding(start) == null
+                || this.findBuilding(destination) == null) {
+            return path;
+        }
+        return PolylineSimplifier.simplify(path, tolerance, edgeFactory);
+    }
 
-            // If the shortest path from start to minDestination is not found,
-            // find it
-            if (!finished.contains(minDestination)) {
-                for (Graph<Coordinates, Double>.Edge pathFromMinDestination :
-                        campusMap.getEdgesFromANode(minDestination)) {
-                    // If we don't know the minimum-cost path from start to child,
-                    // examine the path we've just found
-                    List<Graph<Coordinates, Double>.Edge> newPath = new ArrayList<>();
-                    newPath.addAll(minPath);
-                    newPath.add(pathFromMinDestination);
-                    active.add(newPath);
+    /**
+     * Return up to k different routes from start to destination, shortest first. Every
+     * alternative route is at most (1 + maxStretch) times as long as the shortest path and
+     * shares at most maxOverlap of the shortest path's length with the routes before it.
+     * @param start the name of the start building
+     * @param destination the name of the destination building
+     * @param k the largest number of routes to return
+     * @param maxStretch how much longer than the shortest path an alternative may be, as
+     *                   a fraction of the shortest path's length
+     * @param maxOverlap how much of the shortest path's length an alternative may share
+     *                   with the routes already chosen, as a fraction
+     * @spec.requires {@code k >= 1 && maxStretch >= 0 && 0 <= maxOverlap <= 1}
+     * @throws IllegalArgumentException if start or destination is not a building on campus
+     * @return a List of routes, each a List of Graph.Edges from start to destination. The
+     * List is empty if no path was found
+     */
+    public List<List<Graph<Coordinates, Double>.Edge>> findAlternativePaths(String start,
+                                                                            String destination,
+                                                                            int k,
+                                                                            double maxStretch,
+                                                                            double maxOverlap) {
+        Building startBuilding = this.findBuilding(start);
+        if (startBuilding == null) {
+            throw new IllegalArgumentException("Unknown building: " + start);
+        }
+        Building endBuilding = this.findBuilding(destination);
+        if (endBuilding == null) {
+            throw new IllegalArgumentException("Unknown building: " + destination);
+        }
+        if (!components.mayReach(startBuilding.getLocation(), endBuilding.getLocation())) {
+            return new ArrayList<>();
+        }
+        return alternatives.findRoutes(startBuilding.getLocation(), endBuilding.getLocation(),
+                k, maxStretch, maxOverlap);
+    }
+
+    /**
+     * Return everything that can be reached from the given building by walking at most
+     * "budget" feet, including the boundary of the reachable area
+     * @param building the name of the building the walks start from
+     * @param budget the largest walking distance, in feet
+     * @spec.requires {@code budget >= 0}
+     * @throws IllegalArgumentException if building is not a building on campus
+     * @return an Isochrone of the buildings and area within "budget" feet of "building"
+     */
+    public Isochrone findReachable(String building, double budget) {
+        Building origin = this.findBuilding(building);
+        if (origin == null) {
+            throw new IllegalArgumentException("Unknown building: " + building);
+        }
+        if (searchGraph.indexOf(origin.getLocation()) < 0) {
+            return new Isochrone(origin, budget, Collections.singletonList(
+                    new Isochrone.Destination(origin, 0.0)), 0,
+                    Collections.<Coordinates>emptyList());
+        }
+        // large maps are searched on all cores; both searches find the same distances
+        List<Coordinates> reached = new ArrayList<>();
+        Map<Coordinates, Double> distances = new HashMap<>();
+        if (searchGraph.nodeCount() >= PARALLEL_SEARCH_NODES) {
+            double[] all = parallelSearch.distancesFrom(searchGraph.indexOf(origin.getLocation()),
+                    budget);
+            for (int v = 0; v < all.length; v++) {
+                if (all[v] <= budget) {
+                    reached.add(searchGraph.node(v));
+                    distances.put(searchGraph.node(v), all[v]);
+                }
+            }
+        } else {
+            try (ShortestPathTree<Coordinates> tree =
+                         ShortestPathTree.from(searchGraph, workspaces, origin.getLocation())) {
+                tree.searchWithin(budget);
+                for (int i = 0; i < tree.getSettledCount(); i++) {
+                    Coordinates node = tree.getSettledNode(i);
+                    reached.add(node);
+                    distances.put(node, tree.getDistance(node));
                 }
-                finished.add(minDestination);
             }
         }
-        return null;
+
+        List<Isochrone.Destination> destinations = new ArrayList<>();
+        for (Building b : this.buildings) {
+            Double distance = distances.get(b.getLocation());
+            if (distance != null) {
+                destinations.add(new Isochrone.Destination(b, distance));
+            }
+        }
+        destinations.sort(new Comparator<Isochrone.Destination>() {
+            @Override
+            public int compare(Isochrone.Destination d1, Isochrone.Destination d2) {
+                return Double.compare(d1.getDistance(), d2.getDistance());
+            }
+        });
+        return new Isochrone(origin, budget, destinations, reached.size(),
+                Isochrone.convexHull(reached));
+    }
+
+    /**
+     * Return a short walk that visits every given building exactly once
+     * @param stops the names of the buildings to visit
+     * @param fixedStart if true, the walk starts at the first building in "stops"
+     * @param fixedEnd if true, the walk ends at the last building in "stops"
+     * @param timeBudgetMillis how long the visiting order may be improved for, in milliseconds
+     * @spec.requires {@code stops.size() >= 2 && timeBudgetMillis >= 0}
+     * @throws IllegalArgumentException if a stop is not a building on campus or two stops
+     * are at the same place
+     * @return a MultiStopRoute through every building in "stops", or null if some building
+     * cannot be reached
+     */
+    public @Nullable MultiStopRoute planRoute(List<String> stops, boolean fixedStart,
+                                              boolean fixedEnd, long timeBudgetMillis) {
+        Map<Coordinates, Building> byLocation = new HashMap<>();
+        List<Coordinates> locations = new ArrayList<>();
+        for (String name : stops) {
+            Building building = this.findBuilding(name);
+            if (building == null) {
+                throw new IllegalArgumentException("Unknown building: " + name);
+            }
+            if (byLocation.put(building.getLocation(), building) != null) {
+                throw new IllegalArgumentException("Building is listed twice: " + name);
+            }
+            locations.add(building.getLocation());
+            if (!components.mayReach(locations.get(0), building.getLocation())) {
+                return null;
+            }
+        }
+        MultiStopPlanner.Plan<Coordinates> plan = planner.plan(locations, fixedStart, fixedEnd,
+                timeBudgetMillis);
+        if (plan == null) {
+            return null;
+        }
+        List<Building> visits = new ArrayList<>();
+        for (Coordinates location : plan.getStops()) {
+            visits.add(byLocation.get(location));
+        }
+        return new MultiStopRoute(visits, plan.getPath(), plan.getDistance());
+    }
+
+    /**
+     * Return the buildings that are cut off from the main path network: those that cannot
+     * both reach and be reached from the largest strongly connected group of paths
+     * @return an unmodifiable List of the isolated buildings in alphabetical order
+     */
+    public List<Building> getIsolatedBuildings() {
+        return Collections.unmodifiableList(this.isolatedBuildings);
     }
 
     /**
-     * Convert each sub-path of the shortest path to a String containing the distance,
-     * the direction, and the destination of each sub-path.
+     * Convert the shortest path to Strings containing the distance, the direction, and the
+     * destination of each part of it. Consecutive sub-paths going the same compass direction
+     * are merged into one instruction.
      * @param start the start building
      * @param end the end building
-     * @return a List of Strings, each represents a sub-path of the shortest path between
+     * @return a List of Strings, each represents a part of the shortest path between
      * start and end. The first element in the List is the path title and the last element in
-     * the List is the total distance of the path
+     * the List is the total distance of the path. Returns null if no path was found
      */
     public @Nullable List<String> pathToString(String start, String end) {
-        List<Graph<Coordinates, Double>.Edge> paths = this.findPath(start, end);
+        Building startBuilding = this.findBuilding(start);
+        Building endBuilding = this.findBuilding(end);
 
-        List<String> stringPath = new ArrayList<>();
+        // check if there are unknown buildings
+        if (startBuilding == null || endBuilding == null) {
+            List<String> stringPath = new ArrayList<>();
+            if (startBuilding == null) {
+                stringPath.add("Unknown building: " + start);
+            }
+            if (endBuilding == null && !start.equals(end)) {
+                stringPath.add("Unknown building: " + end);
+            }
+            return stringPath;
+        }
+        if (start.equals(end)) {
+            return directions.describe(startBuilding, endBuilding, new int[0]);
+        }
 
         // In case if no paths were found
-        if (paths == null) {
+        Coordinates startLocation = startBuilding.getLocation();
+        Coordinates endLocation = endBuilding.getLocation();
+        if (!components.mayReach(startLocation, endLocation)) {
             return null;
-        } else { // check if there are unknown buildings, represented by -1.0 length
-            boolean known = true;
-            if (paths.size() >= 1) {
-                if (paths.get(0).getLabel() == -1.0) {
-                    stringPath.add("Unknown building: " + start);
-                    known = false;
-                }
-                if (paths.size() >= 2) {
-                    if (paths.get(1).getLabel() == -1.0) {
-                        if (!start.equals(end)) {
-                            stringPath.add("Unknown building: " + end);
-                        }
-                        known = false;
-                    }
-                }
-            }
-            if (known) {
-                Building startBuilding = this.getStart();
-                Building endBuilding = this.getEnd();
-
-                stringPath.add("Path from " + startBuilding.getLongName() + " to "
-                        + endBuilding.getLongName() + ":");
-                double totalCost = 0.0;
-                for (Graph<Coordinates, Double>.Edge subPath : paths) {
-                    totalCost += subPath.getLabel();
-                    String direction = this.findDirection(subPath);
-                    stringPath.add("\tWalk " + String.format("%.0f", subPath.getLabel()) +
-                            " feet " + direction + " to " + String.format("(%.0f, ",
-                            subPath.getDestination().getX()) + String.format("%.0f)",
-                            subPath.getDestination().getY()));
-                }
-                stringPath.add("Total distance: " + String.format("%.0f", totalCost)
-                        + " feet");
+        }
+        try (ShortestPathTree<Coordinates> tree =
+                     ShortestPathTree.from(searchGraph, workspaces, startLocation)) {
+            if (tree.searchTo(endLocation)) {
+                return directions.describe(startBuilding, endBuilding,
+                        tree.getPathEdges(endLocation));
             }
         }
-        return stringPath;
+        return null;
     }
 
     /**
@@ -241,42 +469,7 @@ public class CampusMapModel {
      *      * classifying directions, with origin on the top-left corner
      */
     public String findDirection(Graph<Coordinates, Double>.Edge path) {
-        double changeInX = path.getDestination().getX() - path.getStart().getX();
-        double changeInY = path.getDestination().getY() - path.getStart().getY();
-        double angle = Math.atan2(-changeInY, changeInX);
-        if (-Math.PI / 8 <= angle && angle <= Math.PI / 8) {
-            return "E";
-        } else if (Math.PI / 8 <= angle && angle <= 3 * Math.PI / 8) {
-            return "NE";
-        } else if (3 * Math.PI / 8 <= angle && angle <= 5 * Math.PI / 8) {
-            return "N";
-        } else if (5 * Math.PI / 8 <= angle && angle <= 7 * Math.PI / 8) {
-            return "NW";
-        } else if (-7 * Math.PI / 8 >= angle || angle >= 7 * Math.PI / 8) {
-            return "W";
-        } else if (-7 * Math.PI / 8 <= angle && angle <= -5 * Math.PI / 8) {
-            return "SW";
-        } else if (-5 * Math.PI / 8 <= angle && angle <= -3 * Math.PI / 8) {
-            return "S";
-        } else {
-            return "SE";
-        }
-    }
-
-    /**
-     * Getter method, return the start building client assigns through view/controller
-     * @return return the start building client assigns through view/controller
-     */
-    public Building getStart() {
-        return this.start;
-    }
-
-    /**
-     * Getter method, return the destination building client assigns through view/controller
-     * @return return the destination building client assigns through view/controller
-     */
-    public Building getEnd() {
-        return this.end;
+        return Directions.compassPoint(path.getStart(), path.getDestination());
     }
 
     /**
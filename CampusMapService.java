@@ -1,43 +1,597 @@
+import org.checkerframework.checker.nullness.qual.*;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 
 /**
  * The Service part of my Spring framework of CampusMap
+ *
+ * If the system property campusmap.popularity.file is set, the service counts how often
+ * every route is asked for and saves the most popular ones to that file every minute and
+ * on shutdown. On startup it searches the saved routes again in parallel and caches them
+ * before it starts serving, for at most campusmap.warmup.millis milliseconds (default
+ * 10000) and until they take about campusmap.warmup.maxBytes bytes (default 16 MiB).
+ * Only routes on loaded maps are warmed, and only the campus map is loaded for it, so
+ * warming neither loads every map that was popular once nor evicts maps at startup.
+ *
+ * The service can host several maps, chosen by the map id every method takes. The map
+ * "campus" is always there; more are defined by the system property campusmap.maps as
+ * "id=paths-file,buildings-file" entries separated by semicolons, which can also point
+ * "campus" at other files. Maps are loaded on first use and evicted, least recently used
+ * first, to keep their estimated size within campusmap.maps.maxBytes (default 1 GiB).
+ * Every map has its own caches; the search threads are shared by all maps.
+ *
+ * The campus map image is served as a TilePyramid from the directory named by the system
+ * property campusmap.tiles.dir (default "tiles"), if one has been built there. Routes can
+ * be drawn onto transparent tiles lining up with it; recently drawn tiles are cached.
  */
 @Service
 public class CampusMapService {
 
+    /** the id of the map that is always hosted */
+    public static final String DEFAULT_MAP = "campus";
+
+    /** the system property defining the hosted maps */
+    public static final String MAPS_PROPERTY = "campusmap.maps";
+
+    /** the system property giving how much memory the loaded maps may take, in bytes */
+    public static final String MAX_MAP_BYTES_PROPERTY = "campusmap.maps.maxBytes";
+
+    /** how much memory the loaded maps may take when MAX_MAP_BYTES_PROPERTY is not set */
+    private static final long DEFAULT_MAX_MAP_BYTES = 1L << 30;
+
+    /** the width of the walking distance buckets reachability answers are cached by, in feet */
+    public static final double REACHABILITY_BUCKET = 100.0;
+
+    /** the largest number of cached reachability answers */
+    private static final int REACHABILITY_CACHE_SIZE = 256;
+
+    /** the largest number of cached routes */
+    private static final int ROUTE_CACHE_SIZE = 4096;
+
+    /** the system property naming the file route popularity is saved to */
+    public static final String POPULARITY_FILE_PROPERTY = "campusmap.popularity.file";
+
+    /** the system property giving how long the cache may be warmed for, in milliseconds */
+    public static final String WARM_UP_MILLIS_PROPERTY = "campusmap.warmup.millis";
+
+    /** the system property giving how much memory warmed routes may take, in bytes */
+    public static final String WARM_UP_MAX_BYTES_PROPERTY = "campusmap.warmup.maxBytes";
+
+    /** the number of popular routes remembered */
+    private static final int POPULAR_ROUTES = 1024;
+
+    /** how often route popularity is saved, in seconds */
+    private static final long POPULARITY_SAVE_SECONDS = 60;
+
+    /** about how many bytes a cached route takes besides its edges */
+    private static final long ROUTE_BYTES = 256;
+
+    /** about how many bytes an edge of a cached route takes */
+    private static final long EDGE_BYTES = 80;
+
+    /** the system property naming the directory of the tile pyramid */
+    public static final String TILES_DIRECTORY_PROPERTY = "campusmap.tiles.dir";
+
+    /** the largest number of cached route overlay tiles */
+    private static final int OVERLAY_CACHE_SIZE = 2048;
+
+    /**
+     * the largest number of requests that may wait for one identical route search; each
+     * holds a request thread while it waits, so this is kept well below the 200 threads of
+     * the web server, leaving threads for other requests while one route is very popular
+     */
+    private static final int MAX_ROUTE_WAITERS = 32;
+
+    /** the largest number of route searches that may wait for a search thread */
+    private static final int SEARCH_QUEUE_LENGTH = 128;
+
+    /** how long a search may wait for a search thread before it is rejected, in milliseconds */
+    private static final long MAX_SEARCH_QUEUE_MILLIS = 2000;
+
+    /**
+     * the paths file and buildings file of every hosted map, keyed by map id
+     */
+    private final Map<String, String[]> mapFiles;
+
+    /**
+     * the hosted maps, each with the CampusMapModel that stores its information
+     */
+    private final MapRegistry<CampusMap> maps;
+
+    /**
+     * the route searches running now, keyed by map, start, end and tolerance, so that
+     * identical concurrent requests share one search
+     */
+    private final SingleFlight<String, List<Graph<Coordinates, Double>.Edge>> routeSearches =
+            new SingleFlight<>(MAX_ROUTE_WAITERS);
+
+    /**
+     * runs the searches on a bounded number of threads, rejecting them when too many wait
+     */
+    private final AdmissionController admission = new AdmissionController(
+            Runtime.getRuntime().availableProcessors(), SEARCH_QUEUE_LENGTH,
+            MAX_SEARCH_QUEUE_MILLIS);
+
     /**
-     * the CampusMapModel that stores information
+     * records the route queries answered, or null if recording is off
      */
-    private CampusMapModel model;
+    private final @Nullable QueryLogRecorder queryLog = QueryLogRecorder.fromSystemProperties();
+
+    /**
+     * the tiles of the campus map image, or null if no pyramid has been built
+     */
+    private final @Nullable TilePyramid tiles;
+
+    /**
+     * the recently drawn route overlay tiles as PNGs, keyed by map, start, end and tile
+     */
+    private final LruCache<String, byte[]> overlays = new LruCache<>(OVERLAY_CACHE_SIZE);
+
+    /**
+     * counts how often every route is asked for, or null if popularity is not kept
+     */
+    private final @Nullable HeavyHitters popularity;
 
     /**
      * Constructor
-     * @spec.effects constructs a service
+     * @spec.effects constructs a service, warming its route cache with the popular routes
+     * saved by earlier runs
      */
     public CampusMapService() {
-        model = new CampusMapModel();
+        Map<String, String[]> files = new LinkedHashMap<>();
+        files.put(DEFAULT_MAP, new String[] {CampusMapModel.CAMPUS_PATHS,
+                CampusMapModel.CAMPUS_BUILDINGS});
+        String definitions = System.getProperty(MAPS_PROPERTY, "");
+        for (String definition : definitions.split(";")) {
+            if (definition.trim().isEmpty()) {
+                continue;
+            }
+            String[] idAndFiles = definition.split("=", 2);
+            String[] paths = idAndFiles.length == 2 ? idAndFiles[1].split(",") : new String[0];
+            if (paths.length != 2 || idAndFiles[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Malformed map definition in "
+                        + MAPS_PROPERTY + ": " + definition);
+            }
+            files.put(idAndFiles[0].trim(), new String[] {paths[0].trim(), paths[1].trim()});
+        }
+        mapFiles = Collections.unmodifiableMap(files);
+        maps = new MapRegistry<>(files.keySet(),
+                id -> new CampusMap(new CampusMapModel(files.get(id)[0], files.get(id)[1])),
+                map -> map.model.estimatedBytes(),
+                Long.getLong(MAX_MAP_BYTES_PROPERTY, DEFAULT_MAX_MAP_BYTES));
+
+        TilePyramid pyramid = null;
+        try {
+            pyramid = TilePyramid.open(new File(System.getProperty(TILES_DIRECTORY_PROPERTY,
+                    "tiles")));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Map tiles not served: " + e.getMessage());
+        }
+        tiles = pyramid;
+
+        String file = System.getProperty(POPULARITY_FILE_PROPERTY);
+        if (file == null || file.isEmpty()) {
+            popularity = null;
+            return;
+        }
+        popularity = new HeavyHitters(POPULAR_ROUTES);
+        File popularityFile = new File(file);
+        if (popularityFile.isFile()) {
+            try {
+                popularity.load(popularityFile);
+                warmUp(popularity.top(ROUTE_CACHE_SIZE),
+                        Long.getLong(WARM_UP_MILLIS_PROPERTY, 10_000),
+                        Long.getLong(WARM_UP_MAX_BYTES_PROPERTY, 16L << 20));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Route popularity not loaded: " + e.getMessage());
+            }
+        }
+        ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "route-popularity-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(() -> savePopularity(popularityFile),
+                POPULARITY_SAVE_SECONDS, POPULARITY_SAVE_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> savePopularity(popularityFile)));
+    }
+
+    /**
+     * Search the given routes in parallel and cache them, stopping when the time or memory
+     * budget runs out. The default map is loaded first; routes on maps that are not loaded
+     * are skipped.
+     * @param keys the keys of the routes, most popular first
+     * @param maxMillis how long warming may take, in milliseconds
+     * @param maxBytes about how much memory the warmed routes may take, in bytes
+     * @spec.modifies this
+     */
+    private void warmUp(List<String> keys, long maxMillis, long maxBytes) {
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        AtomicLong bytes = new AtomicLong();
+        AtomicInteger warmed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        maps.get(DEFAULT_MAP);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> IntStream.range(0, keys.size()).parallel().forEach(i -> {
+                if (System.nanoTime() > deadline || bytes.get() > maxBytes) {
+                    return;
+                }
+                String[] route = keys.get(i).split("\t", 4);
+                if (route.length < 4) {
+                    return;
+                }
+                // loading maps here would evict each other, and the map may no longer be hosted
+                CampusMap map = maps.getIfLoaded(route[0]);
+                if (map == null) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                double tolerance = Double.parseDouble(route[3]);
+                List<Graph<Coordinates, Double>.Edge> path =
+                        computePath(map.model, route[1], route[2], tolerance);
+                if (path != null && bytes.addAndGet(ROUTE_BYTES + EDGE_BYTES * path.size())
+                        <= maxBytes) {
+                    map.routes.put(keys.get(i), path);
+                    warmed.incrementAndGet();
+                }
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+        System.out.printf("Warmed %d of %d popular routes in %d ms, skipped %d on maps not"
+                + " loaded%n", warmed.get(), keys.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), skipped.get());
+    }
+
+    /**
+     * Save route popularity, reporting rather than throwing failures
+     * @param file the file to save to
+     */
+    private void savePopularity(File file) {
+        try {
+            popularity.save(file);
+        } catch (IOException e) {
+            System.err.println("Route popularity not saved: " + e.getMessage());
+        }
     }
 
     /**
-     * Return the shortest path between given two building names
+     * Return the shortest path between given two building names on the campus map
      * @param start the start building
      * @param end the end building
      * @return a List of all the sub-paths of the shortest path between given two building names
      */
     public List<Graph<Coordinates, Double>.Edge> findPath(String start, String end) {
-        return model.findPath(start, end);
+        return findPath(DEFAULT_MAP, start, end, 0);
+    }
+
+    /**
+     * Return the shortest path between given two building names with its geometry
+     * simplified to the given tolerance. Concurrent identical requests share one search,
+     * and routes are cached.
+     * @param map the id of the map
+     * @param start the start building
+     * @param end the end building
+     * @param tolerance the largest distance, in map pixels, between the full and the
+     *                  simplified path; 0 returns the full path
+     * @throws java.util.concurrent.RejectedExecutionException if too many identical
+     * requests or searches are already waiting
+     * @return an unmodifiable List of the sub-paths of the simplified shortest path
+     */
+    public List<Graph<Coordinates, Double>.Edge> findPath(String map, String start,
+                                                          String end, double tolerance) {
+        CampusMap state = maps.get(map);
+        double used = Math.max(tolerance, 0);
+        String key = map + "\t" + start + "\t" + end + "\t" + used;
+        if (popularity != null && state.model.findBuilding(start) != null
+                && state.model.findBuilding(end) != null) {
+            popularity.add(key);
+        }
+        if (queryLog == null) {
+            return routeSearches.execute(key, () -> searchPath(state, key, start, end, used));
+        }
+        long arrived = System.currentTimeMillis();
+        long begin = System.nanoTime();
+        String outcome = "error";
+        try {
+            List<Graph<Coordinates, Double>.Edge> result = routeSearches.execute(key,
+                    () -> searchPath(state, key, start, end, used));
+            outcome = result == null ? "no path" : "ok";
+            return result;
+        } catch (RejectedExecutionException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            queryLog.record(arrived, map, start, end, used, System.nanoTime() - begin,
+                    outcome);
+        }
+    }
+
+    /**
+     * Return the simplified shortest path between given two building names, from the cache
+     * if it is there
+     * @param state the map
+     * @param key the key of the route in the cache
+     * @param start the start building
+     * @param end the end building
+     * @param tolerance the largest distance, in map pixels, between the full and the
+     *                  simplified path; 0 returns the full path
+     * @return an unmodifiable List of the sub-paths of the simplified shortest path
+     */
+    private List<Graph<Coordinates, Double>.Edge> searchPath(CampusMap state, String key,
+                                                             String start, String end,
+                                                             double tolerance) {
+        List<Graph<Coordinates, Double>.Edge> result = state.routes.get(key);
+        if (result == null) {
+            result = admission.call(AdmissionController.Priority.NORMAL,
+                    () -> computePath(state.model, start, end, tolerance));
+            if (result != null) {
+                state.routes.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Search the simplified shortest path between given two building names
+     * @param model the model of the map
+     * @param start the start building
+     * @param end the end building
+     * @param tolerance the largest distance, in map pixels, between the full and the
+     *                  simplified path; 0 returns the full path
+     * @return an unmodifiable List of the sub-paths of the simplified shortest path
+     */
+    private static List<Graph<Coordinates, Double>.Edge> computePath(CampusMapModel model,
+                                                                     String start, String end,
+                                                                     double tolerance) {
+        List<Graph<Coordinates, Double>.Edge> path = tolerance <= 0
+                ? model.findPath(start, end) : model.findSimplifiedPath(start, end, tolerance);
+        return path == null ? null : Collections.unmodifiableList(path);
+    }
+
+    /**
+     * Return how many route requests were searched and how many shared the search of an
+     * identical concurrent request
+     * @return the counters of the route request coalescing
+     */
+    public SingleFlight.Stats getRouteSearchStats() {
+        return routeSearches.getStats();
+    }
+
+    /**
+     * Return how many searches of every priority were run and rejected, and how busy the
+     * search threads are
+     * @return the counters of every search priority
+     */
+    public List<AdmissionController.Stats> getAdmissionStats() {
+        return admission.getStats();
+    }
+
+    /**
+     * Return whether every hosted map is loaded, its estimated size and how often it was
+     * loaded and evicted
+     * @return the state of every hosted map
+     */
+    public List<MapRegistry.Stats> getMapStats() {
+        return maps.getStats();
     }
 
     /**
-     * Return all the buildings on campus
-     * @return a Set of all the Buildings on campus
+     * Return a version of the data of every hosted map, so that clients caching answers can
+     * tell when they are out of date. The version changes whenever a data file is replaced
+     * or modified, or the maps are defined differently, and is cheap enough to ask for often.
+     * @return a short string that differs whenever the answers may differ
      */
-    public Set<Building> getBuildings() {
-        return model.getBuildings();
+    public String getDataVersion() {
+        long hash = 17;
+        for (Map.Entry<String, String[]> map : mapFiles.entrySet()) {
+            hash = 31 * hash + map.getKey().hashCode();
+            for (String path : map.getValue()) {
+                File file = new File(path);
+                hash = 31 * hash + path.hashCode();
+                hash = 31 * hash + file.length();
+                hash = 31 * hash + file.lastModified();
+            }
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * Return the tile pyramid of the campus map image
+     * @return the TilePyramid served, or null if there is none
+     */
+    public @Nullable TilePyramid getTilePyramid() {
+        return tiles;
+    }
+
+    /**
+     * Return the file of a tile of the campus map image
+     * @param z the zoom level
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return the file of tile (z, x, y), or null if there is no such tile
+     */
+    public @Nullable File findTile(int z, int x, int y) {
+        return tiles == null ? null : tiles.tile(z, x, y);
+    }
+
+    /**
+     * Return a transparent tile with the part of the shortest path between two buildings
+     * that lies on tile (z, x, y) of the campus map image. The route is simplified to half
+     * a pixel of the zoom level, so the simplification cannot be seen. Drawing a route is
+     * not counted as asking for it: it adds nothing to route popularity or the query log.
+     * @param map the id of the map
+     * @param start the start building
+     * @param end the end building
+     * @param z the zoom level
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @throws IllegalArgumentException if there is no such tile, or a building is not on
+     * the map
+     * @throws java.util.concurrent.RejectedExecutionException if too many searches or
+     * drawings are already waiting
+     * @return the tile as a PNG, with nothing drawn if there is no path
+     */
+    public byte[] renderRouteOverlay(String map, String start, String end, int z, int x,
+                                     int y) {
+        TilePyramid pyramid = tiles;
+        if (pyramid == null || !pyramid.contains(z, x, y)) {
+            throw new IllegalArgumentException("No tile " + z + "/" + x + "/" + y);
+        }
+        CampusMap state = maps.get(map);
+        for (String building : new String[] {start, end}) {
+            if (state.model.findBuilding(building) == null) {
+                throw new IllegalArgumentException("Unknown building: " + building);
+            }
+        }
+        String key = map + "\t" + start + "\t" + end + "\t" + z + "/" + x + "/" + y;
+        byte[] result = overlays.get(key);
+        if (result == null) {
+            double tolerance = pyramid.scale(z) / 2;
+            String routeKey = map + "\t" + start + "\t" + end + "\t" + tolerance;
+            List<Graph<Coordinates, Double>.Edge> route = routeSearches.execute(routeKey,
+                    () -> searchPath(state, routeKey, start, end, tolerance));
+            result = admission.call(AdmissionController.Priority.LOW,
+                    () -> RouteOverlay.render(route == null ? Collections.emptyList() : route,
+                            pyramid, z, x, y));
+            overlays.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Return up to k different routes between given two building names, shortest first
+     * @param map the id of the map
+     * @param start the start building
+     * @param end the end building
+     * @param k the largest number of routes to return
+     * @param maxStretch how much longer than the shortest path an alternative may be, as
+     *                   a fraction of the shortest path's length
+     * @param maxOverlap how much of the shortest path's length an alternative may share
+     *                   with the routes already chosen, as a fraction
+     * @return a List of routes, each a List of all the sub-paths of that route
+     */
+    public List<List<Graph<Coordinates, Double>.Edge>> findAlternativePaths(String map, String start,
+                                                                            String end, int k,
+                                                                            double maxStretch,
+                                                                            double maxOverlap) {
+        CampusMapModel model = maps.get(map).model;
+        return admission.call(AdmissionController.Priority.LOW,
+                () -> model.findAlternativePaths(start, end, k, maxStretch, maxOverlap));
+    }
+
+    /**
+     * Return the buildings within the given walking distance of a building. The distance is
+     * rounded up to a multiple of REACHABILITY_BUCKET so that similar requests share one
+     * cached answer; the returned Isochrone reports the distance actually used.
+     * @param map the id of the map
+     * @param building the building the walks start from
+     * @param feet the largest walking distance, in feet
+     * @param boundary whether to include the boundary polygon of the reachable area
+     * @return an Isochrone of the buildings within walking distance of "building"
+     */
+    public Isochrone findReachable(String map, String building, double feet, boolean boundary) {
+        CampusMap state = maps.get(map);
+        double budget = Math.ceil(feet / REACHABILITY_BUCKET) * REACHABILITY_BUCKET;
+        Building origin = state.model.findBuilding(building);
+        if (origin == null) {
+            throw new IllegalArgumentException("Unknown building: " + building);
+        }
+        String key = origin.getShortName() + "\t" + budget;
+        Isochrone result = state.reachable.get(key);
+        if (result == null) {
+            result = admission.call(AdmissionController.Priority.NORMAL,
+                    () -> state.model.findReachable(origin.getShortName(), budget));
+            state.reachable.put(key, result);
+        }
+        return boundary ? result : result.withoutBoundary();
+    }
+
+    /**
+     * Return a short walk that visits every given building exactly once
+     * @param map the id of the map
+     * @param stops the buildings to visit
+     * @param fixedStart if true, the walk starts at the first building in "stops"
+     * @param fixedEnd if true, the walk ends at the last building in "stops"
+     * @param timeBudgetMillis how long the visiting order may be improved for, in milliseconds
+     * @return the walk through every building, or null if some building cannot be reached
+     */
+    public MultiStopRoute planRoute(String map, List<String> stops, boolean fixedStart,
+                                    boolean fixedEnd, long timeBudgetMillis) {
+        CampusMapModel model = maps.get(map).model;
+        return admission.call(AdmissionController.Priority.LOW,
+                () -> model.planRoute(stops, fixedStart, fixedEnd, timeBudgetMillis));
+    }
+
+    /**
+     * Return the buildings that are cut off from the main path network
+     * @param map the id of the map
+     * @return a List of the isolated buildings
+     */
+    public List<Building> getIsolatedBuildings(String map) {
+        return maps.get(map).model.getIsolatedBuildings();
+    }
+
+    /**
+     * Return the buildings whose names best complete the given text
+     * @param map the id of the map
+     * @param text what the user has typed so far
+     * @param k the largest number of buildings to return
+     * @param fuzzy whether to also match names one typo away from "text"
+     * @return up to k Buildings, best match first
+     */
+    public List<Building> autocomplete(String map, String text, int k, boolean fuzzy) {
+        return maps.get(map).model.autocomplete(text, k, fuzzy);
+    }
+
+    /**
+     * Return all the buildings on a map
+     * @param map the id of the map
+     * @return a Set of all the Buildings on the map
+     */
+    public Set<Building> getBuildings(String map) {
+        return maps.get(map).model.getBuildings();
+    }
+
+    /**
+     * CampusMap is a hosted map with its own caches
+     */
+    private static final class CampusMap {
+
+        /** the model of the map */
+        final CampusMapModel model;
+
+        /** the recent reachability answers, keyed by origin building and distance bucket */
+        final LruCache<String, Isochrone> reachable = new LruCache<>(REACHABILITY_CACHE_SIZE);
+
+        /** the recent routes, keyed by map, start, end and tolerance */
+        final LruCache<String, List<Graph<Coordinates, Double>.Edge>> routes =
+                new LruCache<>(ROUTE_CACHE_SIZE);
+
+        /**
+         * @param model the model of the map
+         * @spec.effects Constructs a CampusMap with empty caches
+         */
+        CampusMap(CampusMapModel model) {
+            this.model = model;
+        }
     }
 }
 
@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.*;
 
@@ -10,11 +11,17 @@ public class CampusMapViewController {
 
     /**
      * Main method. Accepts client's input and performs the desired operations from
-     * users
+     * users. With "--batch" as the first argument, answers the route requests in a file or
+     * standard input instead; see BatchRouteRunner for the other arguments
      * @param args arguments
+     * @throws IOException if a batch cannot be read or written
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         CampusMapModel model = new CampusMapModel();
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRouteRunner.run(model, Arrays.asList(args).subList(1, args.length));
+            return;
+        }
 
         Scanner console = new Scanner(System.in, Charset.defaultCharset().name());
         showMenu();
@@ -1,11 +1,25 @@
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * the API of campus map spring framework
@@ -14,6 +28,36 @@ import java.util.Set;
 @CrossOrigin("http://localhost:3000")
 public class CampusPathAPI {
 
+    /**
+     * the largest tolerance /buildingLocation simplifies routes with, in map pixels; a
+     * campus map pixel is about two feet
+     */
+    private static final double MAX_TOLERANCE_PIXELS = 250.0;
+
+    /** the largest number of routes /alternativeRoutes returns */
+    private static final int MAX_ALTERNATIVES = 5;
+
+    /** the largest walking distance /reachable accepts, in feet */
+    private static final double MAX_REACHABLE_FEET = 20000.0;
+
+    /** the largest number of buildings /multiStopRoute visits */
+    private static final int MAX_STOPS = 25;
+
+    /** the largest number of buildings /autocomplete returns */
+    private static final int MAX_SUGGESTIONS = 50;
+
+    /** the longest time /multiStopRoute spends improving the visiting order, in milliseconds */
+    private static final long MAX_TIME_BUDGET_MILLIS = 2000;
+
+    /** how long clients may use a map tile before checking whether it changed, in hours */
+    private static final long TILE_MAX_AGE_HOURS = 24;
+
+    /** how long clients may use a route overlay tile before asking again, in hours */
+    private static final long OVERLAY_MAX_AGE_HOURS = 1;
+
+    /** how long a client turned away because the server is busy should wait, in seconds */
+    private static final int RETRY_AFTER_SECONDS = 1;
+
     /**
      * the service of campus map spring framework
      */
@@ -22,24 +66,266 @@ public class CampusPathAPI {
 
     /**
      Return the shortest path between given two building names
+     * @param map the id of the map, "campus" by default
      * @param start the start building
      * @param end the end building
+     * @param tolerance how far, in map pixels, the drawn route may stray from the real one
+     *                  so that nearly straight runs of sub-paths are merged; 0 returns every
+     *                  sub-path
      * @return a List of all the sub-paths of the shortest path between given two building names
      */
     @GetMapping("/buildingLocation")
-    public List<Graph<Coordinates, Double>.Edge> shortestPath(@RequestParam(value="start") String start,
-                                                              @RequestParam(value="end") String end) {
-        this.service = new CampusMapService();
-        return service.findPath(start, end);
+    public List<Graph<Coordinates, Double>.Edge> shortestPath(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map,
+                                                              @RequestParam(value="start") String start,
+                                                              @RequestParam(value="end") String end,
+                                                              @RequestParam(value="tolerance", defaultValue="0") double tolerance) {
+        if (!(tolerance >= 0 && tolerance <= MAX_TOLERANCE_PIXELS)) {
+            throw new IllegalArgumentException("tolerance should be between 0 and " + MAX_TOLERANCE_PIXELS);
+        }
+        return service.findPath(map, start, end, tolerance);
+    }
+
+    /**
+     * Return up to k different routes between given two building names, shortest first
+     * @param map the id of the map, "campus" by default
+     * @param start the start building
+     * @param end the end building
+     * @param k the largest number of routes to return, at most 5
+     * @param maxStretch how much longer than the shortest path an alternative may be, as
+     *                   a fraction of the shortest path's length
+     * @param maxOverlap how much of the shortest path's length an alternative may share
+     *                   with the routes already chosen, as a fraction
+     * @return a List of routes, each a List of all the sub-paths of that route
+     */
+    @GetMapping("/alternativeRoutes")
+    public List<List<Graph<Coordinates, Double>.Edge>> alternativeRoutes(
+            @RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map,
+            @RequestParam(value="start") String start,
+            @RequestParam(value="end") String end,
+            @RequestParam(value="k", defaultValue="3") int k,
+            @RequestParam(value="maxStretch", defaultValue="0.4") double maxStretch,
+            @RequestParam(value="maxOverlap", defaultValue="0.6") double maxOverlap) {
+        if (k < 1 || k > MAX_ALTERNATIVES) {
+            throw new IllegalArgumentException("k should be between 1 and " + MAX_ALTERNATIVES);
+        }
+        if (maxStretch < 0 || maxOverlap < 0 || maxOverlap > 1) {
+            throw new IllegalArgumentException("maxStretch should be non-negative and "
+                    + "maxOverlap should be between 0 and 1");
+        }
+        return service.findAlternativePaths(map, start, end, k, maxStretch, maxOverlap);
+    }
+
+    /**
+     * Return the buildings within the given walking distance of a building
+     * @param map the id of the map, "campus" by default
+     * @param building the building the walks start from
+     * @param feet the largest walking distance, in feet; rounded up to the next 100 feet
+     * @param boundary whether to include the boundary polygon of the reachable area
+     * @return the reachable buildings with their walking distances
+     */
+    @GetMapping("/reachable")
+    public Isochrone reachable(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map,
+                               @RequestParam(value="building") String building,
+                               @RequestParam(value="feet") double feet,
+                               @RequestParam(value="boundary", defaultValue="false") boolean boundary) {
+        if (!(feet >= 0 && feet <= MAX_REACHABLE_FEET)) {
+            throw new IllegalArgumentException("feet should be between 0 and " + MAX_REACHABLE_FEET);
+        }
+        return service.findReachable(map, building, feet, boundary);
+    }
+
+    /**
+     * Return a short walk that visits every given building exactly once
+     * @param map the id of the map, "campus" by default
+     * @param stops the buildings to visit, one "stops" parameter per building
+     * @param fixedStart if true, the walk starts at the first building in "stops"
+     * @param fixedEnd if true, the walk ends at the last building in "stops"
+     * @param timeBudgetMillis how long the visiting order may be improved for, in milliseconds
+     * @return the walk through every building, or null if some building cannot be reached
+     */
+    @GetMapping("/multiStopRoute")
+    public MultiStopRoute multiStopRoute(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map,
+                                         @RequestParam(value="stops") List<String> stops,
+                                         @RequestParam(value="fixedStart", defaultValue="true") boolean fixedStart,
+                                         @RequestParam(value="fixedEnd", defaultValue="false") boolean fixedEnd,
+                                         @RequestParam(value="timeBudgetMillis", defaultValue="200") long timeBudgetMillis) {
+        if (stops.size() < 2 || stops.size() > MAX_STOPS) {
+            throw new IllegalArgumentException("stops should list between 2 and " + MAX_STOPS
+                    + " buildings");
+        }
+        if (timeBudgetMillis < 0 || timeBudgetMillis > MAX_TIME_BUDGET_MILLIS) {
+            throw new IllegalArgumentException("timeBudgetMillis should be between 0 and "
+                    + MAX_TIME_BUDGET_MILLIS);
+        }
+        return service.planRoute(map, stops, fixedStart, fixedEnd, timeBudgetMillis);
+    }
+
+    /**
+     * Return the buildings whose names best complete the given text, so a client can
+     * suggest buildings as the user types without downloading all of them
+     * @param map the id of the map, "campus" by default
+     * @param query what the user has typed so far
+     * @param k the largest number of buildings to return, at most 50
+     * @param fuzzy whether to also match names one typo away from "query"
+     * @return up to k Buildings, best match first
+     */
+    @GetMapping("/autocomplete")
+    public List<Building> autocomplete(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map,
+                                       @RequestParam(value="query") String query,
+                                       @RequestParam(value="k", defaultValue="10") int k,
+                                       @RequestParam(value="fuzzy", defaultValue="true") boolean fuzzy) {
+        if (k < 1 || k > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("k should be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return service.autocomplete(map, query, k, fuzzy);
     }
 
     /**
-     * Return all the buildings on campus
-     * @return a Set of all the Buildings on campus
+     * Return the version of the map data, which changes whenever the answers of this API
+     * may change, so that clients can keep answers until it does
+     * @return the data version of the hosted maps, never cached by clients
+     */
+    @GetMapping("/dataVersion")
+    public ResponseEntity<String> dataVersion() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(service.getDataVersion());
+    }
+
+    /**
+     * Return the size of the campus map image and of its tiles, so a client can tell which
+     * tiles it needs
+     * @return the TilePyramid served, or 404 if there is none
+     */
+    @GetMapping("/tiles")
+    public ResponseEntity<TilePyramid> tilePyramid() {
+        TilePyramid pyramid = service.getTilePyramid();
+        return pyramid == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(pyramid);
+    }
+
+    /**
+     * Return a tile of the campus map image, straight from its file. The tile may be cached
+     * by clients for a day, and is revalidated with its ETag and Last-Modified date, which
+     * change whenever the pyramid is rebuilt.
+     * @param z the zoom level
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return the JPEG of tile (z, x, y), or 404 if there is no such tile
+     */
+    @GetMapping("/tiles/{z}/{x}/{y}.jpg")
+    public ResponseEntity<Resource> tile(@PathVariable("z") int z, @PathVariable("x") int x,
+                                         @PathVariable("y") int y) {
+        File file = service.findTile(z, x, y);
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(TILE_MAX_AGE_HOURS, TimeUnit.HOURS).cachePublic())
+                .eTag(Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length()))
+                .lastModified(file.lastModified())
+                .contentType(MediaType.IMAGE_JPEG)
+                .body(new FileSystemResource(file));
+    }
+
+    /**
+     * Return a transparent tile with the part of the shortest path between two buildings
+     * that lies on the same tile of the campus map image, so a client can lay the route over
+     * the visible map tiles
+     * @param map the id of the map, "campus" by default
+     * @param start the start building
+     * @param end the end building
+     * @param z the zoom level
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return the PNG of the overlay tile, with nothing drawn if there is no path
+     */
+    @GetMapping("/routeOverlay/{z}/{x}/{y}.png")
+    public ResponseEntity<byte[]> routeOverlay(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map,
+                                               @RequestParam(value="start") String start,
+                                               @RequestParam(value="end") String end,
+                                               @PathVariable("z") int z, @PathVariable("x") int x,
+                                               @PathVariable("y") int y) {
+        byte[] png = service.renderRouteOverlay(map, start, end, z, x, y);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(OVERLAY_MAX_AGE_HOURS, TimeUnit.HOURS))
+                .eTag(Integer.toHexString(Arrays.hashCode(png)))
+                .contentType(MediaType.IMAGE_PNG)
+                .body(png);
+    }
+
+    /**
+     * Return all the buildings on a map
+     * @param map the id of the map, "campus" by default
+     * @return a Set of all the Buildings on the map
      */
     @GetMapping("/getBuildings")
-    public Set<Building> getBuildings() {
-        this.service = new CampusMapService();
-        return service.getBuildings();
+    public Set<Building> getBuildings(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map) {
+        return service.getBuildings(map);
+    }
+
+    /**
+     * Return the buildings that are cut off from the main path network of the loaded map,
+     * so that data problems can be spotted after a load
+     * @param map the id of the map, "campus" by default
+     * @return a List of the isolated buildings
+     */
+    @GetMapping("/diagnostics/isolatedBuildings")
+    public List<Building> isolatedBuildings(@RequestParam(value="map", defaultValue=CampusMapService.DEFAULT_MAP) String map) {
+        return service.getIsolatedBuildings(map);
+    }
+
+    /**
+     * Return how many route requests were searched, how many shared the search of an
+     * identical concurrent request and how many were turned away
+     * @return the counters of the route request coalescing
+     */
+    @GetMapping("/diagnostics/routeSearches")
+    public SingleFlight.Stats routeSearches() {
+        return service.getRouteSearchStats();
+    }
+
+    /**
+     * Return how many searches of every priority were run and rejected, and how busy the
+     * search threads are
+     * @return the counters of every search priority
+     */
+    @GetMapping("/diagnostics/admission")
+    public List<AdmissionController.Stats> admission() {
+        return service.getAdmissionStats();
+    }
+
+    /**
+     * Return which maps are loaded, how much memory each is estimated to take and how
+     * often each was loaded and evicted
+     * @return the state of every hosted map
+     */
+    @GetMapping("/diagnostics/maps")
+    public List<MapRegistry.Stats> maps() {
+        return service.getMapStats();
+    }
+
+    /**
+     * Report a bad request, such as an unknown building name, as HTTP 400
+     * @param e the exception thrown while handling the request
+     * @return the message of "e"
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
+    /**
+     * Report a request turned away because the server is too busy as HTTP 503, telling the
+     * client when to retry
+     * @param e the exception thrown while handling the request
+     * @return a response with the message of "e" and a Retry-After header
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> serviceUnavailable(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                .body(e.getMessage());
     }
 }
@@ -1,10 +1,10 @@
 import com.opencsv.exceptions.CsvConstraintViolationException;
 import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import hw3.Graph;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 import org.checkerframework.checker.nullness.qual.*;
 
 /** Parser utility to load the Campus Paths dataset. */
@@ -12,22 +12,48 @@ public class CampusPathsParser {
     // No abstract function because it only has static methods
 
     /**
-     * Reads the CampusPaths dataset. Each line of the input file contains two x-y coordinates
-     * and the distance between them
+     * Reads the CampusPaths dataset into a mutable DoubleWeightedGraph, for a map whose
+     * paths are changed after it is loaded. Each line of the input file contains two x-y
+     * coordinates and the distance between them
      *
      * @spec.requires filename is a valid file path
      * @param filename the file that will be read
-     * @return Return a Graph with information of every path on campus
+     * @return Return a DoubleWeightedGraph with information of every path on campus
      * return null if tsv file is not formatted correctly
      */
-    // "KeyFor": location1 and location2 are guaranteed to be in the Graph
-    // because I call addNode on each of them right before
-    @SuppressWarnings({"DefaultCharset", "StringSplitter", "KeyFor"})
-    public static Graph<Coordinates, Double> parseData(String filename) {
-        Graph<Coordinates, Double> campusMap = new Graph<>();
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new FileReader(filename));
+    public static DoubleWeightedGraph<Coordinates> parseData(String filename) {
+        DoubleWeightedGraph<Coordinates> campusMap = new DoubleWeightedGraph<>();
+        readPaths(filename, (location1, location2, distance) -> {
+            int node1 = campusMap.addNode(location1);
+            int node2 = campusMap.addNode(location2);
+            campusMap.addEdge(node1, node2, distance);
+        });
+        return campusMap;
+    }
+
+    /**
+     * Reads the CampusPaths dataset straight into an immutable CompactGraph. Large files
+     * are parsed in parallel on the common pool; see ParallelPathsParser. This is the
+     * fastest way to load a map that is only searched.
+     *
+     * @spec.requires filename is a valid file path
+     * @param filename the file that will be read
+     * @return Return a CompactGraph with information of every path on campus
+     */
+    public static CompactGraph<Coordinates> parseCompactData(String filename) {
+        return ParallelPathsParser.parseData(filename, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads every path of the CampusPaths dataset and passes it to "sink"
+     *
+     * @spec.requires filename is a valid file path
+     * @param filename the file that will be read
+     * @param sink receives the two ends and the length of every path, in file order
+     */
+    @SuppressWarnings({"DefaultCharset", "StringSplitter"})
+    private static void readPaths(String filename, PathSink sink) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
 
             // Construct the data <shortname, longname, x, y>
             String inputLine;
@@ -50,14 +76,11 @@ public class CampusPathsParser {
 
                 Coordinates location1 = (Coordinates) converter.convert(tokens[0]);
                 Coordinates location2 = (Coordinates) converter.convert(tokens[1]);
-                Double distance = Double.valueOf(tokens[2]);
+                double distance = Double.parseDouble(tokens[2]);
 
                 // Add the parsed data to the Graph.
-                campusMap.addNode(location1);
-                campusMap.addNode(location2);
-                campusMap.addEdge(location1, location2, distance);
+                sink.accept(location1, location2, distance);
             }
-            return campusMap;
         } catch (IOException e) {
             System.err.println(e.toString());
             e.printStackTrace(System.err);
@@ -66,6 +89,18 @@ public class CampusPathsParser {
         } catch (CsvConstraintViolationException ccve) {
             throw new IllegalArgumentException("CSV Constraint Violation Exception");
         }
-        return campusMap;
+    }
+
+    /**
+     * PathSink receives the paths read from a CampusPaths dataset
+     */
+    private interface PathSink {
+        /**
+         * Receive one path
+         * @param location1 the start of the path
+         * @param location2 the end of the path
+         * @param distance the length of the path
+         */
+        void accept(Coordinates location1, Coordinates location2, double distance);
     }
 }
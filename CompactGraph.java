@@ -0,0 +1,389 @@
+import java.util.*;
+
+/**
+ * CompactGraph is an immutable, array-based snapshot of a Graph with Double lengths, made
+ * for searching. Nodes are numbered from 0 and the edges leaving every node are stored
+ * next to each other in flat arrays, so a search can keep its state in arrays indexed by
+ * node and walk edges without allocating.
+ */
+public final class CompactGraph<N> {
+
+    /** the node of every number */
+    private final N[] nodes;
+
+    /** the number of every node */
+    private final Map<N, Integer> ids;
+
+    /** the edges leaving node v are offsets[v] until offsets[v + 1] */
+    private final int[] offsets;
+
+    /** the node every edge starts at */
+    private final int[] sources;
+
+    /** the node every edge ends at */
+    private final int[] targets;
+
+    /** the length of every edge */
+    private final double[] weights;
+
+    /** true if every edge runs against the direction it has on the map */
+    private final boolean reversedView;
+
+    /** the enclosing instance of the Graph.Edges made by edge(e) */
+    private final Graph<N, Double> edgeFactory;
+
+    /** the same graph with every edge turned around, built on first use */
+    private volatile CompactGraph<N> reversed;
+
+    // Abstract Function:
+    // Each CompactGraph g represents a graph whose i-th node is nodes[i]. For every
+    // offsets[v] <= e < offsets[v + 1] there is an edge e from sources[e] == v to targets[e]
+    // of length weights[e]. If reversedView, that edge stands for the map edge from
+    // targets[e] to sources[e], otherwise for the one from sources[e] to targets[e].
+    //
+    // Rep Invariant:
+    // all arrays != null && edgeFactory != null && ids.size() == nodes.length &&
+    // offsets.length == nodes.length + 1 && offsets[0] == 0 &&
+    // offsets is non-decreasing && offsets[nodes.length] == targets.length &&
+    // sources, targets and weights have the same length && every weight >= 0
+
+    /**
+     * Constructs a CompactGraph from arrays that are already laid out
+     * @spec.requires the arguments satisfy the rep invariant
+     * @spec.effects Constructs a CompactGraph that owns the given arrays
+     */
+    private CompactGraph(N[] nodes, Map<N, Integer> ids, int[] offsets, int[] sources,
+                         int[] targets, double[] weights, boolean reversedView,
+                         Graph<N, Double> edgeFactory) {
+        this.nodes = nodes;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.weights = weights;
+        this.reversedView = reversedView;
+        this.edgeFactory = edgeFactory;
+        checkRep();
+    }
+
+    /**
+     * Return a snapshot of the given graph. Later changes to "graph" are not seen by it.
+     * @param graph the graph to copy
+     * @param <N> the node type of the graph
+     * @spec.requires every label of "graph" is non-negative
+     * @return a CompactGraph with the same nodes and edges as "graph"
+     */
+    @SuppressWarnings({"unchecked", "keyfor"})
+    public static <N> CompactGraph<N> of(Graph<N, Double> graph) {
+        int n = graph.getNodes().size();
+        N[] nodes = (N[]) new Object[n];
+        Map<N, Integer> ids = new HashMap<>(n * 2);
+        int m = 0;
+        for (N node : graph.getNodes()) {
+            ids.put(node, ids.size());
+            nodes[ids.size() - 1] = node;
+            m += graph.getEdgesFromANode(node).size();
+        }
+        int[] offsets = new int[n + 1];
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            offsets[v] = e;
+            for (Graph<N, Double>.Edge edge : graph.getEdgesFromANode(nodes[v])) {
+                if (edge.getLabel() < 0) {
+                    throw new IllegalArgumentException("negative length: " + edge.getLabel());
+                }
+                sources[e] = v;
+                targets[e] = ids.get(edge.getDestination());
+                weights[e] = edge.getLabel();
+                e++;
+            }
+        }
+        offsets[n] = e;
+        return new CompactGraph<>(nodes, ids, offsets, sources, targets, weights, false,
+                new Graph<N, Double>());
+    }
+
+    /**
+     * Return a snapshot of the given graph, keeping its handles as node numbers. Later
+     * changes to "graph" are not seen by it.
+     * @param graph the graph to copy
+     * @param <N> the node type of the graph
+     * @spec.requires every weight of "graph" is non-negative
+     * @return a CompactGraph with the same nodes and edges as "graph", where node v is the
+     * node with handle v
+     */
+    @SuppressWarnings("unchecked")
+    public static <N> CompactGraph<N> of(DoubleWeightedGraph<N> graph) {
+        int n = graph.nodeCount();
+        N[] nodes = (N[]) graph.getNodes().toArray();
+        Map<N, Integer> ids = new HashMap<>(n * 4 / 3 + 1);
+        for (int v = 0; v < n; v++) {
+            ids.put(nodes[v], v);
+        }
+        int m = graph.edgeCount();
+        int[] offsets = new int[n + 1];
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        DoubleWeightedGraph<N>.EdgeCursor cursor = graph.newCursor();
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            offsets[v] = e;
+            cursor.reset(v);
+            while (cursor.next()) {
+                if (cursor.weight() < 0) {
+                    throw new IllegalArgumentException("negative length: " + cursor.weight());
+                }
+                sources[e] = v;
+                targets[e] = cursor.target();
+                weights[e] = cursor.weight();
+                e++;
+            }
+        }
+        offsets[n] = e;
+        return new CompactGraph<>(nodes, ids, offsets, sources, targets, weights, false,
+                new Graph<N, Double>());
+    }
+
+    /**
+     * Return a snapshot of the given graph made from an earlier snapshot of it, copying the
+     * edges of the nodes that did not change as whole ranges instead of one by one
+     * @param previous the earlier snapshot
+     * @param graph the graph to copy
+     * @param changed the handles of the nodes whose outgoing edges may have changed since
+     *                "previous" was taken
+     * @param renamed true if a node of "previous" may have been renamed
+     * @param <N> the node type of the graph
+     * @spec.requires "previous" is not a reversed view, every weight of "graph" is
+     * non-negative, and the handles of "graph" below previous.nodeCount() are the nodes of
+     * "previous" in the same order, or renamed ones if "renamed"
+     * @return a CompactGraph with the same nodes and edges as "graph", where node v is the
+     * node with handle v
+     */
+    @SuppressWarnings("unchecked")
+    static <N> CompactGraph<N> of(CompactGraph<N> previous, DoubleWeightedGraph<N> graph,
+                                  BitSet changed, boolean renamed) {
+        int n = graph.nodeCount();
+        int kept = previous.nodes.length;
+        N[] nodes = previous.nodes;
+        Map<N, Integer> ids = previous.ids;
+        if (renamed || n != kept) {
+            nodes = (N[]) graph.getNodes().toArray();
+            ids = new HashMap<>(n * 4 / 3 + 1);
+            for (int v = 0; v < n; v++) {
+                ids.put(nodes[v], v);
+            }
+        }
+        int m = graph.edgeCount();
+        int[] offsets = new int[n + 1];
+        int[] sources = new int[m];
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        DoubleWeightedGraph<N>.EdgeCursor cursor = graph.newCursor();
+        int e = 0;
+        int v = 0;
+        while (v < n) {
+            if (v < kept && !changed.get(v)) {
+                // copy the run of unchanged nodes starting at v in one go
+                int end = Math.min(changed.nextSetBit(v) < 0 ? kept : changed.nextSetBit(v),
+                        kept);
+                int from = previous.offsets[v];
+                int length = previous.offsets[end] - from;
+                System.arraycopy(previous.sources, from, sources, e, length);
+                System.arraycopy(previous.targets, from, targets, e, length);
+                System.arraycopy(previous.weights, from, weights, e, length);
+                for (int u = v; u < end; u++) {
+                    offsets[u] = previous.offsets[u] - from + e;
+                }
+                e += length;
+                v = end;
+                continue;
+            }
+            offsets[v] = e;
+            cursor.reset(v);
+            while (cursor.next()) {
+                if (cursor.weight() < 0) {
+                    throw new IllegalArgumentException("negative length: " + cursor.weight());
+                }
+                sources[e] = v;
+                targets[e] = cursor.target();
+                weights[e] = cursor.weight();
+                e++;
+            }
+            v++;
+        }
+        offsets[n] = e;
+        return new CompactGraph<>(nodes, ids, offsets, sources, targets, weights, false,
+                previous.edgeFactory);
+    }
+
+    /**
+     * Return a graph made of arrays that are already grouped by start node
+     * @param nodes the node of every number
+     * @param ids the number of every node
+     * @param offsets the edges leaving node v are offsets[v] until offsets[v + 1]
+     * @param targets the node every edge ends at
+     * @param weights the length of every edge
+     * @param <N> the node type of the graph
+     * @spec.requires the arguments describe a graph as in the rep invariant, and are not
+     * changed afterwards
+     * @return a CompactGraph that owns the given arrays
+     */
+    static <N> CompactGraph<N> fromArrays(N[] nodes, Map<N, Integer> ids, int[] offsets,
+                                          int[] targets, double[] weights) {
+        int[] sources = new int[targets.length];
+        for (int v = 0; v < nodes.length; v++) {
+            Arrays.fill(sources, offsets[v], offsets[v + 1], v);
+        }
+        return new CompactGraph<>(nodes, ids, offsets, sources, targets, weights, false,
+                new Graph<N, Double>());
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (nodes != null && ids != null && offsets != null && edgeFactory != null);
+        assert (sources != null && targets != null && weights != null);
+        assert (offsets.length == nodes.length + 1);
+        assert (offsets[nodes.length] == targets.length);
+    }
+
+    /**
+     * Return the same graph with every edge turned around. Searching it from a node finds
+     * the shortest paths that end at that node.
+     * @return a CompactGraph with the same node numbers and every edge reversed
+     */
+    @SuppressWarnings("unchecked")
+    public CompactGraph<N> reverse() {
+        CompactGraph<N> result = reversed;
+        if (result == null) {
+            int n = nodes.length;
+            int m = targets.length;
+            int[] inOffsets = new int[n + 1];
+            for (int e = 0; e < m; e++) {
+                inOffsets[targets[e] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                inOffsets[v + 1] += inOffsets[v];
+            }
+            int[] next = Arrays.copyOf(inOffsets, n);
+            int[] inSources = new int[m];
+            int[] inTargets = new int[m];
+            double[] inWeights = new double[m];
+            for (int e = 0; e < m; e++) {
+                int slot = next[targets[e]]++;
+                inSources[slot] = targets[e];
+                inTargets[slot] = sources[e];
+                inWeights[slot] = weights[e];
+            }
+            result = new CompactGraph<>(nodes, ids, inOffsets, inSources, inTargets, inWeights,
+                    !reversedView, edgeFactory);
+            result.reversed = this;
+            reversed = result;
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of nodes in this graph
+     * @return the number of nodes
+     */
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Return the number of edges in this graph
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Return the number of the given node
+     * @param node the node to look up
+     * @return the number of "node", or -1 if it is not in this graph
+     */
+    public int indexOf(N node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the node with the given number
+     * @param v the number of the node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return the node numbered "v"
+     */
+    public N node(int v) {
+        return nodes[v];
+    }
+
+    /**
+     * Return the first edge leaving the given node
+     * @param v the number of the node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return the number of the first edge leaving "v"; the edges leaving "v" are
+     * firstEdge(v) until endEdge(v)
+     */
+    public int firstEdge(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * Return one past the last edge leaving the given node
+     * @param v the number of the node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return one more than the number of the last edge leaving "v"
+     */
+    public int endEdge(int v) {
+        return offsets[v + 1];
+    }
+
+    /**
+     * Return the node the given edge starts at
+     * @param e the number of the edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return the number of the start of "e"
+     */
+    public int source(int e) {
+        return sources[e];
+    }
+
+    /**
+     * Return the node the given edge ends at
+     * @param e the number of the edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return the number of the end of "e"
+     */
+    public int target(int e) {
+        return targets[e];
+    }
+
+    /**
+     * Return the length of the given edge
+     * @param e the number of the edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return the length of "e"
+     */
+    public double weight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * Return a new Graph.Edge for the map edge the given edge stands for. For a reversed
+     * graph that edge runs from target(e) to source(e).
+     * @param e the number of the edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return a Graph.Edge equal to the map edge of "e"
+     */
+    public Graph<N, Double>.Edge edge(int e) {
+        if (reversedView) {
+            return edgeFactory.new Edge(nodes[targets[e]], nodes[sources[e]], weights[e]);
+        }
+        return edgeFactory.new Edge(nodes[sources[e]], nodes[targets[e]], weights[e]);
+    }
+}
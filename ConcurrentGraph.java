@@ -0,0 +1,410 @@
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * ConcurrentGraph is a graph with double lengths that can be changed while other threads
+ * search it. Readers never block: snapshot() returns the latest published Snapshot, an
+ * immutable CompactGraph with a version number, and a search that keeps using one Snapshot
+ * sees the same nodes and edges from start to end no matter what is changed meanwhile.
+ *
+ * Writers are serialized by a lock. Every change is made to a private DoubleWeightedGraph
+ * through an Editor, which remembers the nodes whose edges it changed, and then published
+ * as a new Snapshot. Publishing copies the edges of the nodes that did not change from the
+ * previous Snapshot as whole array ranges and only walks the changed ones, except after a
+ * node is removed, which renumbers nodes and so rebuilds the whole Snapshot. Each
+ * publication still allocates arrays as large as the graph, so many changes that belong
+ * together should be made in one call to update(): readers see either none or all of
+ * them, and they are published once.
+ *
+ * A map whose paths change while it is served is loaded with CampusPathsParser.parseData
+ * and wrapped in a ConcurrentGraph. CampusMapModel does not do this: its maps are loaded
+ * once into a CompactGraph, together with indexes that are built from it.
+ */
+public final class ConcurrentGraph<N> {
+
+    /** the graph writers change, guarded by writeLock */
+    private DoubleWeightedGraph<N> graph;
+
+    /** the handles of the nodes whose outgoing edges the current update changed */
+    private final BitSet changed;
+
+    /** true if the current update renamed a node */
+    private boolean renamed;
+
+    /** true if the current update removed a node */
+    private boolean removed;
+
+    /** serializes writers */
+    private final ReentrantLock writeLock;
+
+    /** the latest published snapshot of graph */
+    private volatile Snapshot<N> current;
+
+    // Abstract Function:
+    // Each ConcurrentGraph g is the sequence of graphs current.getGraph() has been, the
+    // latest of which has version current.getVersion(). Between updates, graph has the same
+    // nodes and edges as current.getGraph(), and the handle of every node in graph is its
+    // number in current.getGraph().
+    //
+    // Rep Invariant:
+    // graph != null && changed != null && writeLock != null && current != null &&
+    // between updates, changed is empty and renamed and removed are false
+
+    /**
+     * @spec.effects Constructs an empty ConcurrentGraph at version 0
+     */
+    public ConcurrentGraph() {
+        this(CompactGraph.of(new DoubleWeightedGraph<N>()));
+    }
+
+    /**
+     * @param initial the nodes and edges to start with; it is copied
+     * @spec.requires {@code initial != null} and every label of "initial" is non-negative
+     * @spec.effects Constructs a ConcurrentGraph at version 0 with the nodes and edges of
+     *               "initial"
+     */
+    public ConcurrentGraph(Graph<N, Double> initial) {
+        this(CompactGraph.of(initial));
+    }
+
+    /**
+     * @param initial the nodes and edges to start with; it is copied
+     * @spec.requires {@code initial != null} and every weight of "initial" is non-negative
+     * @spec.effects Constructs a ConcurrentGraph at version 0 with the nodes and edges of
+     *               "initial"
+     */
+    public ConcurrentGraph(DoubleWeightedGraph<N> initial) {
+        this(CompactGraph.of(initial));
+    }
+
+    /**
+     * @param initial the first snapshot
+     * @spec.effects Constructs a ConcurrentGraph at version 0 with the nodes and edges of
+     *               "initial"
+     */
+    private ConcurrentGraph(CompactGraph<N> initial) {
+        this.graph = copyOf(initial);
+        this.changed = new BitSet();
+        this.writeLock = new ReentrantLock();
+        this.current = new Snapshot<>(0, initial, new SearchWorkspacePool(initial.nodeCount()));
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (graph != null && changed != null && writeLock != null && current != null);
+    }
+
+    /**
+     * Return the latest published state of this graph. This never blocks.
+     * @return the latest Snapshot
+     */
+    public Snapshot<N> snapshot() {
+        return current;
+    }
+
+    /**
+     * Return the version of the latest published state of this graph
+     * @return the number of updates published so far
+     */
+    public long version() {
+        return current.getVersion();
+    }
+
+    /**
+     * Apply a batch of changes and publish them together as one new version. Only one
+     * writer runs at a time; readers keep seeing the previous version until the changes
+     * are published. If "changes" throws, nothing is published and the graph is left as
+     * it was.
+     * @param changes makes its changes through the Editor it is given, which must not be
+     *                used afterwards
+     * @spec.modifies this
+     * @spec.effects Publish the graph changed by "changes" as the next version
+     * @return the new Snapshot
+     */
+    public Snapshot<N> update(Consumer<Editor> changes) {
+        writeLock.lock();
+        Editor editor = new Editor();
+        try {
+            Snapshot<N> previous = current;
+            CompactGraph<N> compact;
+            try {
+                changes.accept(editor);
+                editor.open = false;
+                compact = removed ? CompactGraph.of(graph)
+                        : CompactGraph.of(previous.getGraph(), graph, changed, renamed);
+            } catch (RuntimeException | Error e) {
+                graph = copyOf(previous.getGraph());
+                throw e;
+            }
+            SearchWorkspacePool workspaces = compact.nodeCount() == previous.getGraph().nodeCount()
+                    ? previous.getWorkspaces() : new SearchWorkspacePool(compact.nodeCount());
+            Snapshot<N> next = new Snapshot<>(previous.getVersion() + 1, compact, workspaces);
+            current = next;
+            return next;
+        } finally {
+            editor.open = false;
+            changed.clear();
+            renamed = false;
+            removed = false;
+            checkRep();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Add the given node and publish the change
+     * @param node the node to add
+     * @spec.requires {@code node != null}
+     * @spec.modifies this
+     * @spec.effects Add "node" if it is not in the graph yet
+     * @return the new Snapshot
+     */
+    public Snapshot<N> addNode(N node) {
+        return update(g -> g.addNode(node));
+    }
+
+    /**
+     * Add an edge between two nodes and publish the change
+     * @param start the start of the edge
+     * @param destination the end of the edge
+     * @param length the length of the edge
+     * @spec.requires start and destination are nodes of the graph and {@code length >= 0}
+     * @spec.modifies this
+     * @spec.effects Add an edge from "start" to "destination" of length "length"
+     * @return the new Snapshot
+     */
+    public Snapshot<N> addEdge(N start, N destination, double length) {
+        return update(g -> g.addEdge(start, destination, length));
+    }
+
+    /**
+     * Remove an edge between two nodes and publish the change
+     * @param start the start of the edge
+     * @param destination the end of the edge
+     * @param length the length of the edge
+     * @spec.requires start and destination are nodes of the graph
+     * @spec.modifies this
+     * @spec.effects Remove the edge from "start" to "destination" of length "length", if any
+     * @return the new Snapshot
+     */
+    public Snapshot<N> removeEdge(N start, N destination, double length) {
+        return update(g -> g.removeEdge(start, destination, length));
+    }
+
+    /**
+     * Remove a node with every edge to or from it and publish the change
+     * @param node the node to remove
+     * @spec.requires node is a node of the graph
+     * @spec.modifies this
+     * @spec.effects Remove "node" and its edges
+     * @return the new Snapshot
+     */
+    public Snapshot<N> removeNode(N node) {
+        return update(g -> g.removeNode(node));
+    }
+
+    /**
+     * Return a DoubleWeightedGraph with the nodes and edges of a snapshot
+     * @param snapshot the snapshot to copy
+     * @param <N> the node type of the graph
+     * @return a new graph where the handle of every node is its number in "snapshot"
+     */
+    private static <N> DoubleWeightedGraph<N> copyOf(CompactGraph<N> snapshot) {
+        DoubleWeightedGraph<N> copy = new DoubleWeightedGraph<>(snapshot.nodeCount());
+        for (int v = 0; v < snapshot.nodeCount(); v++) {
+            copy.addNode(snapshot.node(v));
+        }
+        for (int e = 0; e < snapshot.edgeCount(); e++) {
+            copy.addEdge(snapshot.source(e), snapshot.target(e), snapshot.weight(e));
+        }
+        return copy;
+    }
+
+    /**
+     * Editor makes the changes of one update() to the graph, remembering which nodes they
+     * touch so that only those are copied when the update is published. It can only be
+     * used while the update that made it runs.
+     */
+    public final class Editor {
+
+        /** true until the update that made this Editor ends */
+        private boolean open = true;
+
+        /**
+         * @spec.effects Constructs an Editor for the current update
+         */
+        private Editor() {
+        }
+
+        /**
+         * Checks if the graph contains the given node
+         * @param node the node to check
+         * @return true if the graph contains "node"
+         */
+        public boolean contains(N node) {
+            return handle(node, false) >= 0;
+        }
+
+        /**
+         * Add the given node to the graph if it is not in it yet
+         * @param node the new node
+         * @spec.requires {@code node != null}
+         * @spec.modifies the graph
+         * @spec.effects Add "node" to the graph if it is not in it
+         */
+        public void addNode(N node) {
+            checkOpen();
+            graph.addNode(node);
+        }
+
+        /**
+         * Add an edge between two nodes, unless there is one of the same length already
+         * @param start the start of the edge
+         * @param destination the end of the edge
+         * @param length the length of the edge
+         * @spec.requires start and destination are nodes of the graph and {@code length >= 0}
+         * @spec.modifies the graph
+         * @spec.effects Add an edge from "start" to "destination" of length "length"
+         */
+        public void addEdge(N start, N destination, double length) {
+            if (!(length >= 0)) {
+                throw new IllegalArgumentException("negative length: " + length);
+            }
+            int from = handle(start, true);
+            graph.addEdge(from, handle(destination, true), length);
+            changed.set(from);
+        }
+
+        /**
+         * Remove an edge between two nodes
+         * @param start the start of the edge
+         * @param destination the end of the edge
+         * @param length the length of the edge
+         * @spec.requires start and destination are nodes of the graph
+         * @spec.modifies the graph
+         * @spec.effects Remove the edge from "start" to "destination" of length "length",
+         *               if any
+         * @return true if an edge was removed
+         */
+        public boolean removeEdge(N start, N destination, double length) {
+            int from = handle(start, true);
+            if (!graph.removeEdge(from, handle(destination, true), length)) {
+                return false;
+            }
+            changed.set(from);
+            return true;
+        }
+
+        /**
+         * Remove a node with every edge to or from it
+         * @param node the node to remove
+         * @spec.requires node is a node of the graph
+         * @spec.modifies the graph
+         * @spec.effects Remove "node" and its edges
+         */
+        public void removeNode(N node) {
+            graph.removeNode(handle(node, true));
+            removed = true;
+        }
+
+        /**
+         * Set the name of a node, keeping its edges
+         * @param node the node to rename
+         * @param newName the new name of the node
+         * @spec.requires node is a node of the graph and {@code newName != null} is not
+         *                another node of the graph
+         * @spec.modifies the graph
+         * @spec.effects Set the name of "node" to "newName"
+         */
+        public void renameNode(N node, N newName) {
+            graph.renameNode(handle(node, true), newName);
+            renamed = true;
+        }
+
+        /**
+         * Return the handle of a node in the graph
+         * @param node the node to look up
+         * @param required true to throw if "node" is not in the graph
+         * @throws IllegalArgumentException if "required" and "node" is not in the graph
+         * @return the handle of "node", or -1 if it is not in the graph
+         */
+        private int handle(N node, boolean required) {
+            checkOpen();
+            int v = graph.handleOf(node);
+            if (v < 0 && required) {
+                throw new IllegalArgumentException("unknown node: " + node);
+            }
+            return v;
+        }
+
+        /**
+         * Throw an IllegalStateException if the update that made this Editor has ended
+         */
+        private void checkOpen() {
+            if (!open) {
+                throw new IllegalStateException("the update of this Editor has ended");
+            }
+        }
+    }
+
+    /**
+     * Snapshot is one published, immutable version of a ConcurrentGraph, with a pool of
+     * search workspaces that fit it
+     */
+    public static final class Snapshot<N> {
+
+        /** the number of updates published before this one */
+        private final long version;
+
+        /** the nodes and edges of this version */
+        private final CompactGraph<N> graph;
+
+        /** the reusable search state for graph */
+        private final SearchWorkspacePool workspaces;
+
+        // Abstract Function:
+        // Each Snapshot s is version s.version of a ConcurrentGraph, whose nodes and edges
+        // are those of s.graph.
+        //
+        // Rep Invariant:
+        // version >= 0 && graph != null && workspaces != null
+
+        /**
+         * @param version the number of updates published before this one
+         * @param graph the nodes and edges of this version
+         * @param workspaces the reusable search state for "graph"
+         * @spec.effects Constructs a new Snapshot
+         */
+        private Snapshot(long version, CompactGraph<N> graph, SearchWorkspacePool workspaces) {
+            this.version = version;
+            this.graph = graph;
+            this.workspaces = workspaces;
+        }
+
+        /**
+         * Return the version of this snapshot
+         * @return the number of updates published before this one
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Return the nodes and edges of this snapshot
+         * @return an immutable CompactGraph
+         */
+        public CompactGraph<N> getGraph() {
+            return graph;
+        }
+
+        /**
+         * Return the pool of search workspaces for getGraph()
+         * @return a SearchWorkspacePool for graphs with as many nodes as getGraph()
+         */
+        public SearchWorkspacePool getWorkspaces() {
+            return workspaces;
+        }
+    }
+}
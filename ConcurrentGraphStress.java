@@ -0,0 +1,280 @@
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ConcurrentGraphStress checks that searches on a ConcurrentGraph never see a torn or stale
+ * update. A writer thread keeps changing the length of random two-way streets of a grid,
+ * always changing both directions of a street in the same update, and now and then adds a
+ * spur node joined to the corner of the grid by a two-way edge, or removes one. Before it
+ * publishes a version, the writer logs the change that version makes. Reader threads
+ * search snapshots of the graph and replay the log up to the version they see, so every
+ * snapshot must have exactly the nodes, and every edge exactly the length, that the log
+ * says it has at that version, and the shortest distance from a to b must equal the one
+ * from b to a. Versions seen by one reader must never go back. The program prints what it
+ * checked and how long publishing took, and exits with status 1 if any check failed.
+ *
+ * Usage: java ConcurrentGraphStress [seconds] [readers] [grid side]
+ */
+public class ConcurrentGraphStress {
+    // No abstract function because it only has static methods
+
+    /** the largest number of versions the writer publishes */
+    private static final int LOG_CAPACITY = 1 << 21;
+
+    /** the logged change that adds a spur node */
+    private static final int ADD_SPUR = -1;
+
+    /** the logged change that removes a spur node */
+    private static final int REMOVE_SPUR = -2;
+
+    /** the length of the edges between a spur node and the corner of the grid */
+    private static final double SPUR_LENGTH = 1.0;
+
+    /** the largest number of spur nodes in the graph at once */
+    private static final int MAX_SPURS = 4;
+
+    /**
+     * Main method. Runs the stress test and prints the results to the console
+     * @param args optionally the number of seconds to run, the number of reader threads
+     *             and the number of nodes along each side of the grid
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int readerCount = args.length > 1 ? Integer.parseInt(args[1])
+                : Math.max(2, Runtime.getRuntime().availableProcessors());
+        int side = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        int gridNodes = side * side;
+
+        DoubleWeightedGraph<Integer> grid = new DoubleWeightedGraph<>(gridNodes);
+        for (int v = 0; v < gridNodes; v++) {
+            grid.addNode(v);
+        }
+        List<int[]> streets = new ArrayList<>();
+        Map<Long, Integer> streetOf = new HashMap<>();
+        for (int v = 0; v < gridNodes; v++) {
+            if ((v + 1) % side != 0) {
+                streetOf.put(key(v, v + 1, gridNodes), streets.size());
+                streets.add(new int[] {v, v + 1});
+            }
+            if (v + side < gridNodes) {
+                streetOf.put(key(v, v + side, gridNodes), streets.size());
+                streets.add(new int[] {v, v + side});
+            }
+        }
+        for (int[] street : streets) {
+            grid.addEdge(street[0], street[1], 100.0);
+            grid.addEdge(street[1], street[0], 100.0);
+        }
+        ConcurrentGraph<Integer> graph = new ConcurrentGraph<>(grid);
+
+        // the change published as version k is logChange[k] (a street, ADD_SPUR or
+        // REMOVE_SPUR) with logLength[k] or logNode[k]; written before k is published
+        int[] logChange = new int[LOG_CAPACITY];
+        double[] logLength = new double[LOG_CAPACITY];
+        int[] logNode = new int[LOG_CAPACITY];
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong searches = new AtomicLong();
+        AtomicLong snapshots = new AtomicLong();
+        AtomicLong publishNanos = new AtomicLong();
+
+        Thread writer = new Thread(() -> {
+            Random random = new Random(1);
+            double[] lengths = new double[streets.size()];
+            Arrays.fill(lengths, 100.0);
+            List<Integer> spurs = new ArrayList<>();
+            int nextSpur = gridNodes;
+            while (running.get() && graph.version() + 1 < LOG_CAPACITY) {
+                int version = (int) graph.version() + 1;
+                long begin;
+                if (random.nextInt(8) == 0) {
+                    boolean add = spurs.isEmpty()
+                            || (spurs.size() < MAX_SPURS && random.nextBoolean());
+                    int spur = add ? nextSpur++ : spurs.remove(random.nextInt(spurs.size()));
+                    logChange[version] = add ? ADD_SPUR : REMOVE_SPUR;
+                    logNode[version] = spur;
+                    begin = System.nanoTime();
+                    if (add) {
+                        spurs.add(spur);
+                        graph.update(g -> {
+                            g.addNode(spur);
+                            g.addEdge(spur, 0, SPUR_LENGTH);
+                            g.addEdge(0, spur, SPUR_LENGTH);
+                        });
+                    } else {
+                        graph.removeNode(spur);
+                    }
+                } else {
+                    int s = random.nextInt(streets.size());
+                    int a = streets.get(s)[0];
+                    int b = streets.get(s)[1];
+                    double old = lengths[s];
+                    double length = 50 + random.nextInt(100);
+                    lengths[s] = length;
+                    logChange[version] = s;
+                    logLength[version] = length;
+                    begin = System.nanoTime();
+                    graph.update(g -> {
+                        g.removeEdge(a, b, old);
+                        g.addEdge(a, b, length);
+                        g.removeEdge(b, a, old);
+                        g.addEdge(b, a, length);
+                    });
+                }
+                publishNanos.addAndGet(System.nanoTime() - begin);
+            }
+        }, "writer");
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < readerCount; r++) {
+            long seed = r;
+            readers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                double[] lengths = new double[streets.size()];
+                Arrays.fill(lengths, 100.0);
+                Set<Integer> spurs = new HashSet<>();
+                long lastVersion = 0;
+                while (running.get() && failure.get() == null) {
+                    ConcurrentGraph.Snapshot<Integer> snapshot = graph.snapshot();
+                    long version = snapshot.getVersion();
+                    if (version < lastVersion) {
+                        failure.compareAndSet(null, "version went back from " + lastVersion
+                                + " to " + version);
+                        break;
+                    }
+                    for (long k = lastVersion + 1; k <= version; k++) {
+                        int change = logChange[(int) k];
+                        if (change == ADD_SPUR) {
+                            spurs.add(logNode[(int) k]);
+                        } else if (change == REMOVE_SPUR) {
+                            spurs.remove(logNode[(int) k]);
+                        } else {
+                            lengths[change] = logLength[(int) k];
+                        }
+                    }
+                    lastVersion = version;
+                    String problem = checkContents(snapshot.getGraph(), gridNodes, streetOf,
+                            lengths, spurs);
+                    if (problem == null) {
+                        problem = checkDistances(snapshot, random.nextInt(gridNodes),
+                                random.nextInt(gridNodes));
+                    }
+                    if (problem != null) {
+                        failure.compareAndSet(null, "version " + version + ": " + problem);
+                    }
+                    snapshots.incrementAndGet();
+                    searches.addAndGet(2);
+                }
+            }, "reader-" + r));
+        }
+
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        System.out.println("versions published: " + graph.version());
+        System.out.printf("publish time:       %.1f us per version%n",
+                publishNanos.get() / 1000.0 / Math.max(graph.version(), 1));
+        System.out.println("snapshots checked:  " + snapshots.get());
+        System.out.println("searches checked:   " + searches.get());
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("no torn or stale updates seen");
+    }
+
+    /**
+     * Return the key of the street between two grid nodes
+     * @param a one end of the street
+     * @param b the other end of the street
+     * @param gridNodes the number of nodes of the grid
+     * @return a number that is the same for (a, b) and (b, a)
+     */
+    private static long key(int a, int b, int gridNodes) {
+        return (long) Math.min(a, b) * gridNodes + Math.max(a, b);
+    }
+
+    /**
+     * Check that a snapshot has exactly the given nodes and edges
+     * @param graph the snapshot to check
+     * @param gridNodes the number of nodes of the grid
+     * @param streetOf the street of every key(a, b, gridNodes) of two neighbours a and b
+     * @param lengths the length every street should have
+     * @param spurs the spur nodes the snapshot should have
+     * @return a description of the first problem found, or null if there is none
+     */
+    private static String checkContents(CompactGraph<Integer> graph, int gridNodes,
+                                        Map<Long, Integer> streetOf, double[] lengths,
+                                        Set<Integer> spurs) {
+        if (graph.nodeCount() != gridNodes + spurs.size()) {
+            return graph.nodeCount() + " nodes instead of " + (gridNodes + spurs.size());
+        }
+        for (int spur : spurs) {
+            if (graph.indexOf(spur) < 0) {
+                return "spur " + spur + " is missing";
+            }
+        }
+        int edgeCount = 2 * lengths.length + 2 * spurs.size();
+        if (graph.edgeCount() != edgeCount) {
+            return graph.edgeCount() + " edges instead of " + edgeCount;
+        }
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int a = graph.node(graph.source(e));
+            int b = graph.node(graph.target(e));
+            double expected;
+            if (a < gridNodes && b < gridNodes) {
+                Integer street = streetOf.get(key(a, b, gridNodes));
+                expected = street == null ? Double.NaN : lengths[street];
+            } else {
+                expected = Math.min(a, b) == 0 && spurs.contains(Math.max(a, b))
+                        ? SPUR_LENGTH : Double.NaN;
+            }
+            if (graph.weight(e) != expected) {
+                return "edge " + a + "->" + b + " has length " + graph.weight(e)
+                        + " instead of " + expected;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check that the shortest distance between two nodes is the same both ways
+     * @param snapshot the snapshot to search
+     * @param a one node
+     * @param b the other node
+     * @return a description of the problem, or null if the distances agree
+     */
+    private static String checkDistances(ConcurrentGraph.Snapshot<Integer> snapshot,
+                                         int a, int b) {
+        CompactGraph<Integer> graph = snapshot.getGraph();
+        double there;
+        double back;
+        try (ShortestPathTree<Integer> tree =
+                     ShortestPathTree.from(graph, snapshot.getWorkspaces(), a)) {
+            tree.searchTo(b);
+            there = tree.getDistance(b);
+        }
+        try (ShortestPathTree<Integer> tree =
+                     ShortestPathTree.from(graph, snapshot.getWorkspaces(), b)) {
+            tree.searchTo(a);
+            back = tree.getDistance(a);
+        }
+        if (there != back) {
+            return "distance " + a + "->" + b + " is " + there + " but " + back + " back";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,350 @@
+import java.util.*;
+
+/**
+ * ConnectedComponents labels every node of a Graph or CompactGraph with its weakly connected component
+ * (the nodes it is joined to when edge directions are ignored) and its strongly connected
+ * component (the nodes it can both reach and be reached from). The labels are computed
+ * once, so that queries between nodes that can never reach each other can be answered
+ * without searching.
+ */
+public class ConnectedComponents<N> {
+
+    /** the weakly connected component of every node */
+    private final Map<N, Integer> weak;
+
+    /** the strongly connected component of every node */
+    private final Map<N, Integer> strong;
+
+    /** the number of nodes in every weakly connected component */
+    private final int[] weakSizes;
+
+    /** the number of nodes in every strongly connected component */
+    private final int[] strongSizes;
+
+    // Abstract Function:
+    // Each ConnectedComponents c partitions the nodes of a graph twice: weak.get(n) is the
+    // id of the weakly connected component of n and strong.get(n) is the id of the
+    // strongly connected component of n. Component ids start at 0 and weakSizes[i] /
+    // strongSizes[i] is the number of nodes with id i.
+    //
+    // Rep Invariant:
+    // weak != null && strong != null && weakSizes != null && strongSizes != null &&
+    // weak.keySet().equals(strong.keySet())
+
+    /**
+     * Constructs the components of the given graph
+     * @param graph the graph whose components are computed
+     * @spec.requires {@code graph != null}
+     * @spec.effects Labels every node of "graph" with its weak and strong component
+     */
+    public <E> ConnectedComponents(Graph<N, E> graph) {
+        this(new ArrayList<>(graph.getNodes()), graph);
+    }
+
+    /**
+     * Constructs the components of the given graph
+     * @param graph the graph whose components are computed
+     * @spec.requires {@code graph != null}
+     * @spec.effects Labels every node of "graph" with its weak and strong component
+     */
+    public ConnectedComponents(CompactGraph<N> graph) {
+        this(nodesOf(graph), successorsOf(graph));
+    }
+
+    /**
+     * Constructs the components of the given graph, whose nodes are listed in "nodes"
+     * @param nodes the nodes of "graph"
+     * @param graph the graph whose components are computed
+     * @spec.effects Labels every node of "graph" with its weak and strong component
+     */
+    @SuppressWarnings("keyfor")
+    private <E> ConnectedComponents(List<N> nodes, Graph<N, E> graph) {
+        this(nodes, successorsOf(nodes, graph));
+    }
+
+    /**
+     * Constructs the components of a graph given by the successors of every node
+     * @param nodes the nodes of the graph
+     * @param successors successors[i] are the positions in "nodes" of the ends of the edges
+     *                   leaving nodes.get(i)
+     * @spec.effects Labels every node in "nodes" with its weak and strong component
+     */
+    private ConnectedComponents(List<N> nodes, int[][] successors) {
+        int n = nodes.size();
+        int[] weakIds = weakComponents(successors);
+        int[] strongIds = strongComponents(successors);
+        this.weak = new HashMap<>(n * 2);
+        this.strong = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            weak.put(nodes.get(i), weakIds[i]);
+            strong.put(nodes.get(i), strongIds[i]);
+        }
+        this.weakSizes = sizes(weakIds);
+        this.strongSizes = sizes(strongIds);
+        checkRep();
+    }
+
+    /**
+     * Return the successors of every node of a Graph
+     * @param nodes the nodes of "graph"
+     * @param graph the graph
+     * @return an array whose i-th element lists the positions in "nodes" of the ends of the
+     * edges leaving nodes.get(i)
+     */
+    @SuppressWarnings("keyfor")
+    private static <N, E> int[][] successorsOf(List<N> nodes, Graph<N, E> graph) {
+        int n = nodes.size();
+        Map<N, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            index.put(nodes.get(i), i);
+        }
+        int[][] successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Set<Graph<N, E>.Edge> edges = graph.getEdgesFromANode(nodes.get(i));
+            successors[i] = new int[edges.size()];
+            int j = 0;
+            for (Graph<N, E>.Edge e : edges) {
+                successors[i][j++] = index.get(e.getDestination());
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * Return the nodes of a CompactGraph in number order
+     * @param graph the graph
+     * @return a List whose i-th element is graph.node(i)
+     */
+    private static <N> List<N> nodesOf(CompactGraph<N> graph) {
+        List<N> nodes = new ArrayList<>(graph.nodeCount());
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            nodes.add(graph.node(v));
+        }
+        return nodes;
+    }
+
+    /**
+     * Return the successors of every node of a CompactGraph
+     * @param graph the graph
+     * @return an array whose v-th element lists the ends of the edges leaving node v
+     */
+    private static int[][] successorsOf(CompactGraph<?> graph) {
+        int[][] successors = new int[graph.nodeCount()][];
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            int first = graph.firstEdge(v);
+            successors[v] = new int[graph.endEdge(v) - first];
+            for (int e = first; e < graph.endEdge(v); e++) {
+                successors[v][e - first] = graph.target(e);
+            }
+        }
+        return successors;
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (weak != null && strong != null);
+        assert (weakSizes != null && strongSizes != null);
+        assert (weak.size() == strong.size());
+    }
+
+    /**
+     * Return the weakly connected component id of every node, using union-find
+     * @param successors the successors of every node
+     * @return an array of component ids numbered from 0 in order of first node
+     */
+    private static int[] weakComponents(int[][] successors) {
+        int n = successors.length;
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j : successors[i]) {
+                int a = find(parent, i);
+                int b = find(parent, j);
+                if (a != b) {
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        int[] ids = new int[n];
+        int[] idOfRoot = new int[n];
+        Arrays.fill(idOfRoot, -1);
+        int next = 0;
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (idOfRoot[root] < 0) {
+                idOfRoot[root] = next++;
+            }
+            ids[i] = idOfRoot[root];
+        }
+        return ids;
+    }
+
+    /**
+     * Return the root of the union-find set containing i, halving the path on the way
+     * @param parent the union-find parent of every node
+     * @param i the node to look up
+     * @spec.modifies parent
+     * @return the root of the set containing i
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Return the strongly connected component id of every node, using an iterative
+     * version of Tarjan's algorithm so that long paths cannot overflow the call stack
+     * @param successors the successors of every node
+     * @return an array of component ids numbered from 0 in the order they are completed
+     */
+    private static int[] strongComponents(int[][] successors) {
+        int n = successors.length;
+        int[] ids = new int[n];
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] nextEdge = new int[n];
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] callStack = new int[n];
+        Arrays.fill(order, -1);
+        int counter = 0;
+        int stackSize = 0;
+        int components = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (nextEdge[v] < successors[v].length) {
+                    int w = successors[v][nextEdge[v]++];
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                } else {
+                    depth--;
+                    if (low[v] == order[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            ids[w] = components;
+                        } while (w != v);
+                        components++;
+                    }
+                    if (depth > 0) {
+                        int parent = callStack[depth - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Return the number of nodes with every component id
+     * @param ids the component id of every node
+     * @return an array whose i-th element counts the nodes with id i
+     */
+    private static int[] sizes(int[] ids) {
+        int count = 0;
+        for (int id : ids) {
+            count = Math.max(count, id + 1);
+        }
+        int[] sizes = new int[count];
+        for (int id : ids) {
+            sizes[id]++;
+        }
+        return sizes;
+    }
+
+    /**
+     * Return the index of the largest entry of the given array
+     * @param sizes the array to look through
+     * @return the index of the largest entry, or -1 if "sizes" is empty
+     */
+    private static int largest(int[] sizes) {
+        int best = -1;
+        for (int i = 0; i < sizes.length; i++) {
+            if (best < 0 || sizes[i] > sizes[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the weakly connected component of the given node
+     * @param node the node to look up
+     * @return the id of the weakly connected component of "node", or -1 if "node" is
+     * not in the graph
+     */
+    public int getWeakComponent(N node) {
+        Integer id = weak.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the strongly connected component of the given node
+     * @param node the node to look up
+     * @return the id of the strongly connected component of "node", or -1 if "node" is
+     * not in the graph
+     */
+    public int getStrongComponent(N node) {
+        Integer id = strong.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Return the id of the weakly connected component with the most nodes
+     * @return the id of the largest weakly connected component, or -1 if the graph is empty
+     */
+    public int getLargestWeakComponent() {
+        return largest(weakSizes);
+    }
+
+    /**
+     * Return the id of the strongly connected component with the most nodes
+     * @return the id of the largest strongly connected component, or -1 if the graph is empty
+     */
+    public int getLargestStrongComponent() {
+        return largest(strongSizes);
+    }
+
+    /**
+     * Checks if a path from "from" to "to" could exist. A false answer is certain; a true
+     * answer is certain only if both nodes are in the same strongly connected component.
+     *
+     * Tarjan's algorithm completes a strongly connected component only after every
+     * component it has an edge to, so an edge never leads to a component with a higher id
+     * and no path can either. Pairs that are weakly connected but only joined against the
+     * direction of their edges are therefore also answered without searching.
+     * @param from the start of the path
+     * @param to the end of the path
+     * @return false if either node is not in the graph, the nodes are in different weakly
+     * connected components, or the strongly connected component of "to" was completed
+     * after that of "from"; true otherwise
+     */
+    public boolean mayReach(N from, N to) {
+        int a = getWeakComponent(from);
+        return a >= 0 && a == getWeakComponent(to)
+                && getStrongComponent(to) <= getStrongComponent(from);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * DeltaSteppingBenchmark compares DeltaSteppingSearch with the sequential Dijkstra search
+ * of ShortestPathTree on a large synthetic street grid. It checks that both find exactly
+ * the same distances and prints the time of a full single-source search on 1, 2, 4, ...
+ * up to all available cores, with the speedup over sequential Dijkstra.
+ *
+ * Usage: java DeltaSteppingBenchmark [grid side] [delta]
+ */
+public class DeltaSteppingBenchmark {
+    // No abstract function because it only has static methods
+
+    /** the number of timed searches per configuration; the fastest is reported */
+    private static final int REPEATS = 5;
+
+    /**
+     * Main method. Runs the benchmark and prints the results to the console
+     * @param args optionally the number of nodes along each side of the grid and the
+     *             bucket width
+     */
+    public static void main(String[] args) {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        CompactGraph<Integer> graph = grid(side, new Random(42));
+        double delta = args.length > 1 ? Double.parseDouble(args[1])
+                : DeltaSteppingSearch.defaultDelta(graph);
+        int source = graph.nodeCount() / 2 + side / 2;
+        System.out.println("nodes: " + graph.nodeCount() + ", edges: " + graph.edgeCount()
+                + ", delta: " + delta);
+
+        SearchWorkspacePool workspaces = new SearchWorkspacePool(graph.nodeCount());
+        double[] expected = new double[graph.nodeCount()];
+        long sequential = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r++) {
+            long start = System.nanoTime();
+            try (ShortestPathTree<Integer> tree =
+                         ShortestPathTree.from(graph, workspaces, graph.node(source))) {
+                tree.searchWithin(Double.POSITIVE_INFINITY);
+                sequential = Math.min(sequential, System.nanoTime() - start);
+                for (int v = 0; v < graph.nodeCount(); v++) {
+                    expected[v] = tree.getDistance(graph.node(v));
+                }
+            }
+        }
+        System.out.println("dijkstra:      " + sequential / 1_000_000 + " ms");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        SortedSet<Integer> coreCounts = new TreeSet<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            coreCounts.add(threads);
+        }
+        coreCounts.add(cores);
+        for (int threads : coreCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            DeltaSteppingSearch<Integer> search = new DeltaSteppingSearch<>(graph, pool, delta);
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < REPEATS; r++) {
+                long start = System.nanoTime();
+                double[] distances = search.distancesFrom(source);
+                best = Math.min(best, System.nanoTime() - start);
+                if (!Arrays.equals(distances, expected)) {
+                    throw new AssertionError("delta-stepping disagrees with Dijkstra");
+                }
+            }
+            pool.shutdown();
+            System.out.printf("delta %2d core%s %5d ms  speedup %.2f%n", threads,
+                    threads == 1 ? ": " : "s:", best / 1_000_000, (double) sequential / best);
+        }
+    }
+
+    /**
+     * Return a two-way street grid with randomly perturbed block lengths
+     * @param side the number of nodes along each side
+     * @param random the source of the block lengths
+     * @return a CompactGraph of side * side nodes numbered row by row
+     */
+    private static CompactGraph<Integer> grid(int side, Random random) {
+        DoubleWeightedGraph<Integer> graph = new DoubleWeightedGraph<>(side * side);
+        for (int v = 0; v < side * side; v++) {
+            graph.addNode(v);
+        }
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                int v = row * side + col;
+                if (col + 1 < side) {
+                    double length = 40 + 80 * random.nextDouble();
+                    graph.addEdge(v, v + 1, length);
+                    graph.addEdge(v + 1, v, length);
+                }
+                if (row + 1 < side) {
+                    double length = 40 + 80 * random.nextDouble();
+                    graph.addEdge(v, v + side, length);
+                    graph.addEdge(v + side, v, length);
+                }
+            }
+        }
+        return CompactGraph.of(graph);
+    }
+}
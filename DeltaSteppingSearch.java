@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * DeltaSteppingSearch computes single-source shortest path distances on a CompactGraph
+ * with the delta-stepping algorithm, relaxing edges in parallel on a ForkJoinPool.
+ *
+ * Nodes are grouped into buckets of width delta by tentative distance. The lowest
+ * non-empty bucket is emptied by repeatedly relaxing the light edges (length at most
+ * delta) of its nodes in parallel until no node falls back into it; then the heavy edges
+ * of every node removed from it are relaxed once. Distances are updated with a
+ * compare-and-set on their bit patterns, which for non-negative doubles order the same
+ * way as the values, so no locks are needed. The distances are exactly those Dijkstra's
+ * algorithm finds, since both compute the smallest floating-point path sum.
+ *
+ * Every tentative distance lies within the longest edge of the bucket being emptied, so
+ * the buckets are kept in a ring of ceil(longest edge / delta) + 1 slots rather than one
+ * array indexed by distance, and edges that would lead past the budget are not relaxed.
+ */
+public final class DeltaSteppingSearch<N> {
+
+    /** frontiers smaller than this are relaxed on the calling thread */
+    private static final int PARALLEL_FRONTIER = 512;
+
+    /** the largest number of buckets in the ring */
+    private static final int MAX_SLOTS = 1 << 24;
+
+    /** the graph that is searched */
+    private final CompactGraph<N> graph;
+
+    /** the pool edges are relaxed on */
+    private final ForkJoinPool pool;
+
+    /** the bucket width */
+    private final double delta;
+
+    /** the number of buckets in the ring, enough to hold every tentative distance */
+    private final int slots;
+
+    // Abstract Function:
+    // Each DeltaSteppingSearch s finds distances in s.graph using buckets of width s.delta
+    // and the threads of s.pool.
+    //
+    // Rep Invariant:
+    // graph != null && pool != null && delta > 0 &&
+    // slots == ceil(the longest edge of graph / delta) + 1
+
+    /**
+     * Constructs a search over the given graph
+     * @param graph the graph to search
+     * @param pool the pool edges are relaxed on
+     * @param delta the bucket width; see defaultDelta(graph)
+     * @spec.requires {@code graph != null && pool != null && delta > 0}
+     * @throws IllegalArgumentException if "delta" is not positive, or so small that the
+     * longest edge spans more than MAX_SLOTS buckets
+     * @spec.effects Constructs a new DeltaSteppingSearch
+     */
+    public DeltaSteppingSearch(CompactGraph<N> graph, ForkJoinPool pool, double delta) {
+        if (!(delta > 0)) {
+            throw new IllegalArgumentException("delta should be positive");
+        }
+        double longest = 0.0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            longest = Math.max(longest, graph.weight(e));
+        }
+        double span = Math.ceil(longest / delta) + 1;
+        if (!(span <= MAX_SLOTS)) {
+            throw new IllegalArgumentException("delta is too small for the longest edge");
+        }
+        this.graph = graph;
+        this.pool = pool;
+        this.delta = delta;
+        this.slots = (int) span;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (graph != null && pool != null);
+        assert (delta > 0 && slots > 0);
+    }
+
+    /**
+     * Return a bucket width that works well for the given graph: a few times its average
+     * edge length, so a bucket holds enough nodes to keep every thread busy without making
+     * nodes be relaxed many times
+     * @param graph the graph to search
+     * @return a positive bucket width for "graph"
+     */
+    public static double defaultDelta(CompactGraph<?> graph) {
+        double total = 0.0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            total += graph.weight(e);
+        }
+        double mean = graph.edgeCount() == 0 ? 0.0 : total / graph.edgeCount();
+        return mean > 0 ? 4 * mean : 1.0;
+    }
+
+    /**
+     * Return the shortest path distance from the given node to every node within "budget"
+     * @param source the number of the node the paths start from
+     * @param budget the largest distance that has to be exact
+     * @spec.requires {@code 0 <= source < graph.nodeCount() && budget >= 0}
+     * @return an array whose v-th element is the distance of node v if that distance is at
+     * most "budget". Other elements are larger than "budget", possibly positive infinity.
+     */
+    public double[] distancesFrom(int source, double budget) {
+        checkRep();
+        int n = graph.nodeCount();
+        AtomicLongArray distance = new AtomicLongArray(n);
+        long infinity = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+        for (int v = 0; v < n; v++) {
+            distance.set(v, infinity);
+        }
+        distance.set(source, Double.doubleToLongBits(0.0));
+
+        // bucket b is kept in ring[b % slots]; entries of nodes that have since moved to a
+        // lower bucket are left behind and skipped when their bucket is emptied
+        IntList[] ring = new IntList[slots];
+        ring[0] = new IntList();
+        ring[0].add(source);
+        long pending = 1;
+        int[] frontierStamp = new int[n];
+        int[] removedStamp = new int[n];
+        int phase = 0;
+        int round = 0;
+
+        for (long i = 0; pending > 0 && i * delta <= budget; i++) {
+            int slot = (int) (i % slots);
+            IntList bucket = ring[slot];
+            if (bucket == null || bucket.size == 0) {
+                continue;
+            }
+            ring[slot] = null;
+            pending -= bucket.size;
+            round++;
+            IntList removed = new IntList();
+            IntList frontier = new IntList();
+            phase++;
+            for (int k = 0; k < bucket.size; k++) {
+                int v = bucket.data[k];
+                if (bucketOf(distance.get(v)) == i && frontierStamp[v] != phase) {
+                    frontierStamp[v] = phase;
+                    frontier.add(v);
+                }
+            }
+
+            while (frontier.size > 0) {
+                for (int k = 0; k < frontier.size; k++) {
+                    int v = frontier.data[k];
+                    if (removedStamp[v] != round) {
+                        removedStamp[v] = round;
+                        removed.add(v);
+                    }
+                }
+                IntList[] improved = relax(frontier, distance, true, budget);
+                phase++;
+                IntList next = new IntList();
+                for (IntList chunk : improved) {
+                    for (int k = 0; k < chunk.size; k++) {
+                        int w = chunk.data[k];
+                        long b = bucketOf(distance.get(w));
+                        if (b == i) {
+                            if (frontierStamp[w] != phase) {
+                                frontierStamp[w] = phase;
+                                next.add(w);
+                            }
+                        } else {
+                            add(ring, b, w);
+                            pending++;
+                        }
+                    }
+                }
+                frontier = next;
+            }
+
+            for (IntList chunk : relax(removed, distance, false, budget)) {
+                for (int k = 0; k < chunk.size; k++) {
+                    int w = chunk.data[k];
+                    add(ring, bucketOf(distance.get(w)), w);
+                    pending++;
+                }
+            }
+        }
+
+        double[] result = new double[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = Double.longBitsToDouble(distance.get(v));
+        }
+        return result;
+    }
+
+    /**
+     * Return the shortest path distance from the given node to every node
+     * @param source the number of the node the paths start from
+     * @spec.requires {@code 0 <= source < graph.nodeCount()}
+     * @return an array whose v-th element is the distance of node v, or positive infinity
+     * if v cannot be reached
+     */
+    public double[] distancesFrom(int source) {
+        return distancesFrom(source, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Return a shortest path tree for the given distances: for every reached node other
+     * than the source, the edge with the smallest number that ends at it and lies on a
+     * shortest path
+     * @param distances the distances returned by distancesFrom
+     * @param source the node the distances were computed from
+     * @return an array whose v-th element is the number of the tree edge of node v, or -1
+     * for the source and for nodes that were not reached
+     */
+    public int[] parentEdges(double[] distances, int source) {
+        int n = graph.nodeCount();
+        int[] parents = new int[n];
+        Arrays.fill(parents, -1);
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            int v = graph.target(e);
+            if (v != source && parents[v] < 0 && !Double.isInfinite(distances[v])
+                    && distances[graph.source(e)] + graph.weight(e) == distances[v]) {
+                parents[v] = e;
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Relax the light or heavy edges of every given node, in parallel for large inputs
+     * @param nodes the nodes whose edges are relaxed
+     * @param distance the tentative distances, updated in place
+     * @param light true to relax edges of length at most delta, false for longer ones
+     * @param budget the largest distance worth recording
+     * @return the nodes whose distance improved, one list per chunk of "nodes"; a node may
+     * appear more than once
+     */
+    private IntList[] relax(IntList nodes, AtomicLongArray distance, boolean light,
+                            double budget) {
+        int chunks = nodes.size < PARALLEL_FRONTIER ? 1
+                : Math.min(4 * pool.getParallelism(), nodes.size / (PARALLEL_FRONTIER / 4));
+        IntList[] improved = new IntList[chunks];
+        if (chunks == 1) {
+            improved[0] = relaxRange(nodes, 0, nodes.size, distance, light, budget);
+        } else {
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+                int from = (int) ((long) nodes.size * c / chunks);
+                int to = (int) ((long) nodes.size * (c + 1) / chunks);
+                improved[c] = relaxRange(nodes, from, to, distance, light, budget);
+            })).join();
+        }
+        return improved;
+    }
+
+    /**
+     * Relax the light or heavy edges of nodes.data[from, to)
+     * @param nodes the nodes whose edges are relaxed
+     * @param from the first position in "nodes"
+     * @param to one past the last position in "nodes"
+     * @param distance the tentative distances, updated in place
+     * @param light true to relax edges of length at most delta, false for longer ones
+     * @param budget the largest distance worth recording; longer paths are not relaxed
+     * @return the nodes whose distance improved
+     */
+    private IntList relaxRange(IntList nodes, int from, int to, AtomicLongArray distance,
+                               boolean light, double budget) {
+        IntList improved = new IntList();
+        for (int k = from; k < to; k++) {
+            int v = nodes.data[k];
+            double d = Double.longBitsToDouble(distance.get(v));
+            for (int e = graph.firstEdge(v), end = graph.endEdge(v); e < end; e++) {
+                double weight = graph.weight(e);
+                if ((weight <= delta) != light) {
+                    continue;
+                }
+                if (d + weight > budget) {
+                    continue;
+                }
+                int w = graph.target(e);
+                long candidate = Double.doubleToLongBits(d + weight);
+                long current = distance.get(w);
+                while (candidate < current) {
+                    if (distance.compareAndSet(w, current, candidate)) {
+                        improved.add(w);
+                        break;
+                    }
+                    current = distance.get(w);
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * Return the bucket a distance falls in
+     * @param bits the bit pattern of a non-negative finite distance
+     * @return the index of the bucket of width delta containing the distance
+     */
+    private long bucketOf(long bits) {
+        return (long) Math.floor(Double.longBitsToDouble(bits) / delta);
+    }
+
+    /**
+     * Add a node to a bucket of the ring
+     * @param ring the buckets, bucket b in ring[b % ring.length]
+     * @param b the index of the bucket
+     * @param v the node to add
+     * @spec.requires bucket b is fewer than ring.length buckets after the one being emptied
+     * @spec.modifies ring
+     */
+    private static void add(IntList[] ring, long b, int v) {
+        int slot = (int) (b % ring.length);
+        if (ring[slot] == null) {
+            ring[slot] = new IntList();
+        }
+        ring[slot].add(v);
+    }
+
+    /**
+     * IntList is a growable list of ints
+     */
+    private static final class IntList {
+
+        /** the elements, in data[0, size) */
+        private int[] data = new int[16];
+
+        /** the number of elements */
+        private int size;
+
+        /**
+         * Append an element
+         * @param v the element to append
+         * @spec.modifies this
+         */
+        void add(int v) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, 2 * size);
+            }
+            data[size++] = v;
+        }
+    }
+}
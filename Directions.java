@@ -0,0 +1,163 @@
+import java.util.*;
+
+/**
+ * Directions turns paths of a campus map into turn-by-turn instructions. The compass
+ * direction of every edge of the map is computed once, when a Directions is constructed,
+ * and consecutive edges that go the same direction are merged into a single "Walk"
+ * instruction. Lines are rendered with a StringBuilder and a rounding formatter instead of
+ * String.format.
+ */
+public final class Directions {
+
+    /** the names of the eight compass directions, indexed by sector */
+    private static final String[] COMPASS = {"E", "NE", "N", "NW", "W", "SW", "S", "SE"};
+
+    /** values at least this large are not rounded by appendRounded */
+    private static final double MAX_ROUNDED = 1e15;
+
+    /** the map the paths are on */
+    private final CompactGraph<Coordinates> graph;
+
+    /** the compass sector of every edge of graph, an index into COMPASS */
+    private final byte[] sectors;
+
+    // Abstract Function:
+    // Each Directions d describes paths of d.graph; edge e of d.graph goes in direction
+    // COMPASS[d.sectors[e]].
+    //
+    // Rep Invariant:
+    // graph != null && sectors != null && sectors.length == graph.edgeCount() &&
+    // every element of sectors is in [0, COMPASS.length)
+
+    /**
+     * @param graph the map the paths will be on
+     * @spec.requires {@code graph != null}
+     * @spec.effects Constructs Directions for paths of "graph", computing the direction of
+     *               every edge
+     */
+    public Directions(CompactGraph<Coordinates> graph) {
+        this.graph = graph;
+        this.sectors = new byte[graph.edgeCount()];
+        for (int e = 0; e < sectors.length; e++) {
+            sectors[e] = (byte) sector(graph.node(graph.source(e)), graph.node(graph.target(e)));
+        }
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (graph != null && sectors != null);
+        assert (sectors.length == graph.edgeCount());
+    }
+
+    /**
+     * Return the compass direction from one point to another, based on the eight sectors
+     * for classifying directions, with origin on the top-left corner
+     * @param from the start point
+     * @param to the end point
+     * @return one of "E", "NE", "N", "NW", "W", "SW", "S" and "SE"
+     */
+    public static String compassPoint(Coordinates from, Coordinates to) {
+        return COMPASS[sector(from, to)];
+    }
+
+    /**
+     * Return the compass sector of the direction from one point to another. The y axis
+     * points down, so a smaller y is further north.
+     * @param from the start point
+     * @param to the end point
+     * @return the index in COMPASS of the direction from "from" to "to"
+     */
+    private static int sector(Coordinates from, Coordinates to) {
+        double angle = Math.atan2(-(to.getY() - from.getY()), to.getX() - from.getX());
+        if (-Math.PI / 8 <= angle && angle <= Math.PI / 8) {
+            return 0;
+        } else if (Math.PI / 8 <= angle && angle <= 3 * Math.PI / 8) {
+            return 1;
+        } else if (3 * Math.PI / 8 <= angle && angle <= 5 * Math.PI / 8) {
+            return 2;
+        } else if (5 * Math.PI / 8 <= angle && angle <= 7 * Math.PI / 8) {
+            return 3;
+        } else if (-7 * Math.PI / 8 >= angle || angle >= 7 * Math.PI / 8) {
+            return 4;
+        } else if (-7 * Math.PI / 8 <= angle && angle <= -5 * Math.PI / 8) {
+            return 5;
+        } else if (-5 * Math.PI / 8 <= angle && angle <= -3 * Math.PI / 8) {
+            return 6;
+        } else {
+            return 7;
+        }
+    }
+
+    /**
+     * Describe a path between two buildings
+     * @param from the building the path starts at
+     * @param to the building the path ends at
+     * @param edges the numbers of the edges of the path in walking order
+     * @spec.requires "edges" is a path of the graph from the location of "from" to the
+     * location of "to"
+     * @return a List of Strings: a title, one "Walk" instruction for every run of
+     * consecutive edges going the same direction, and the total distance
+     */
+    public List<String> describe(Building from, Building to, int[] edges) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder(64);
+        line.append("Path from ").append(from.getLongName()).append(" to ")
+                .append(to.getLongName()).append(':');
+        lines.add(line.toString());
+
+        double totalCost = 0.0;
+        int i = 0;
+        while (i < edges.length) {
+            int sector = sectors[edges[i]];
+            double length = 0.0;
+            int last = i;
+            while (last < edges.length && sectors[edges[last]] == sector) {
+                length += graph.weight(edges[last]);
+                last++;
+            }
+            totalCost += length;
+            Coordinates end = graph.node(graph.target(edges[last - 1]));
+            line.setLength(0);
+            line.append("\tWalk ");
+            appendRounded(line, length);
+            line.append(" feet ").append(COMPASS[sector]).append(" to (");
+            appendRounded(line, end.getX());
+            line.append(", ");
+            appendRounded(line, end.getY());
+            line.append(')');
+            lines.add(line.toString());
+            i = last;
+        }
+
+        line.setLength(0);
+        line.append("Total distance: ");
+        appendRounded(line, totalCost);
+        line.append(" feet");
+        lines.add(line.toString());
+        return lines;
+    }
+
+    /**
+     * Append a number rounded to a whole number, half away from zero, as
+     * String.format("%.0f", value) would
+     * @param s where to append
+     * @param value the number to append
+     * @spec.modifies s
+     */
+    static void appendRounded(StringBuilder s, double value) {
+        if (!(Math.abs(value) < MAX_ROUNDED)) {
+            s.append(String.format("%.0f", value));
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            s.append('-');
+            value = -value;
+        }
+        long whole = (long) value;
+        if (value - whole >= 0.5) {
+            whole++;
+        }
+        s.append(whole);
+    }
+}
@@ -0,0 +1,571 @@
+import java.util.*;
+
+/**
+ * DoubleWeightedGraph is a mutable directed weighted multi-graph like Graph, specialized
+ * for edges labeled with primitive double weights. Every node gets an int handle when it
+ * is added, and the edges leaving a node are kept in parallel int and double arrays, so
+ * building and walking the graph never boxes a weight or creates an edge object. Edges
+ * are read through a reusable EdgeCursor instead of a Set of edges. The edges entering a
+ * node are kept the same way, so that removing or renaming a node takes time proportional
+ * to its edges, as in Graph. The nodes themselves cannot be null.
+ *
+ * Handles are dense: the handles of a graph of n nodes are 0 until n. Removing a node
+ * therefore gives its handle to the node that had the last handle.
+ */
+public class DoubleWeightedGraph<N> {
+
+    /** the node of every handle */
+    private final List<N> nodes;
+
+    /** the handle of every node */
+    private final Map<N, Integer> handles;
+
+    /** targets[v][0, degree[v]) are the ends of the edges leaving v */
+    private int[][] targets;
+
+    /** weights[v][i] is the weight of the edge to targets[v][i] */
+    private double[][] weights;
+
+    /** the number of edges leaving every node */
+    private int[] degree;
+
+    /** sources[v][0, inDegree[v]) are the starts of the edges entering v */
+    private int[][] sources;
+
+    /** sourceWeights[v][i] is the weight of the edge from sources[v][i] */
+    private double[][] sourceWeights;
+
+    /** the number of edges entering every node */
+    private int[] inDegree;
+
+    /** the total number of edges */
+    private int edgeCount;
+
+    /** if true, run checkRep() */
+    private final boolean runCheckRep = false;
+
+    // Abstract Function:
+    // Each DoubleWeightedGraph g has the nodes nodes.get(0), ..., nodes.get(nodes.size() - 1),
+    // where the handle of nodes.get(v) is v, and for every 0 <= i < degree[v] an edge from
+    // v to targets[v][i] of weight weights[v][i]. sources, sourceWeights and inDegree list
+    // the same edges by the node they enter.
+    //
+    // Representation Invariant for every DoubleWeightedGraph g:
+    // nodes != null && handles != null && handles.size() == nodes.size() &&
+    // forall v, handles.get(nodes.get(v)) == v &&
+    // targets, weights, degree, sources, sourceWeights and inDegree have room for every
+    // handle &&
+    // no two edges from the same node have the same target and weight &&
+    // for every v and 0 <= i < degree[v], there is a j with sources[targets[v][i]][j] == v
+    //     and sourceWeights[targets[v][i]][j] == weights[v][i], and the other way round &&
+    // edgeCount is the sum of degree and the sum of inDegree
+
+    /**
+     * @spec.effects Constructs an empty DoubleWeightedGraph
+     */
+    public DoubleWeightedGraph() {
+        this(16);
+    }
+
+    /**
+     * @param expectedNodes the number of nodes the graph is expected to hold
+     * @spec.requires {@code expectedNodes >= 0}
+     * @spec.effects Constructs an empty DoubleWeightedGraph with room for "expectedNodes"
+     *               nodes
+     */
+    public DoubleWeightedGraph(int expectedNodes) {
+        int capacity = Math.max(expectedNodes, 1);
+        this.nodes = new ArrayList<>(capacity);
+        this.handles = new HashMap<>(capacity * 4 / 3 + 1);
+        this.targets = new int[capacity][];
+        this.weights = new double[capacity][];
+        this.degree = new int[capacity];
+        this.sources = new int[capacity][];
+        this.sourceWeights = new double[capacity][];
+        this.inDegree = new int[capacity];
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        if (runCheckRep) {
+            assert (nodes != null && handles != null) : "nodes should never be null";
+            assert (handles.size() == nodes.size()) : "every node should have one handle";
+            assert (degree.length >= nodes.size() && inDegree.length >= nodes.size())
+                    : "every node should have edge lists";
+            int in = 0;
+            int out = 0;
+            for (int v = 0; v < nodes.size(); v++) {
+                assert (handles.get(nodes.get(v)) == v) : "handles should match nodes";
+                out += degree[v];
+                in += inDegree[v];
+                for (int i = 0; i < degree[v]; i++) {
+                    assert (indexOf(sources, sourceWeights, inDegree, targets[v][i], v,
+                            weights[v][i]) >= 0) : "every edge should be listed at its end";
+                }
+            }
+            assert (in == edgeCount && out == edgeCount) : "edgeCount should count every edge";
+        }
+    }
+
+    /**
+     * Add the given node to this graph if it is not in it yet
+     *
+     * @param newNode the new node
+     * @spec.requires {@code newNode != null}
+     * @spec.modifies this
+     * @spec.effects Add "newNode" to this graph if it is not in it
+     * @return the handle of "newNode"
+     */
+    public int addNode(N newNode) {
+        if (newNode == null) {
+            throw new IllegalArgumentException();
+        }
+        Integer known = handles.get(newNode);
+        if (known != null) {
+            return known;
+        }
+        int v = nodes.size();
+        if (v == degree.length) {
+            int capacity = 2 * v;
+            targets = Arrays.copyOf(targets, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            degree = Arrays.copyOf(degree, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+            sourceWeights = Arrays.copyOf(sourceWeights, capacity);
+            inDegree = Arrays.copyOf(inDegree, capacity);
+        }
+        nodes.add(newNode);
+        handles.put(newNode, v);
+        checkRep();
+        return v;
+    }
+
+    /**
+     * Add an edge of the given weight between the given two nodes. No identical edges
+     * are allowed in the same graph.
+     *
+     * @param start the handle of the parent node of the edge
+     * @param destination the handle of the child node of the edge
+     * @param weight the weight of the edge
+     * @spec.requires start and destination are handles of this graph
+     * @spec.modifies this
+     * @spec.effects Add an edge from start to destination of weight "weight" if there
+     *               is none
+     */
+    public void addEdge(int start, int destination, double weight) {
+        checkHandle(start);
+        checkHandle(destination);
+        if (indexOf(targets, weights, degree, start, destination, weight) >= 0) {
+            return;
+        }
+        append(targets, weights, degree, start, destination, weight);
+        append(sources, sourceWeights, inDegree, destination, start, weight);
+        edgeCount++;
+        checkRep();
+    }
+
+    /**
+     * Remove the edge of the given weight between the given two nodes
+     *
+     * @param start the handle of the parent node of the edge
+     * @param destination the handle of the child node of the edge
+     * @param weight the weight of the edge
+     * @spec.requires start and destination are handles of this graph
+     * @spec.modifies this
+     * @spec.effects Remove the edge from start to destination of weight "weight", if any
+     * @return true if an edge was removed
+     */
+    public boolean removeEdge(int start, int destination, double weight) {
+        checkHandle(start);
+        checkHandle(destination);
+        int i = indexOf(targets, weights, degree, start, destination, weight);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(targets, weights, degree, start, i);
+        removeAt(sources, sourceWeights, inDegree, destination,
+                indexOf(sources, sourceWeights, inDegree, destination, start, weight));
+        edgeCount--;
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Checks if the graph contains the given edge
+     * @param start the handle of the parent node of the edge
+     * @param destination the handle of the child node of the edge
+     * @param weight the weight of the edge
+     * @return true if there is an edge from start to destination of weight "weight"
+     */
+    public boolean containsEdge(int start, int destination, double weight) {
+        checkHandle(start);
+        checkHandle(destination);
+        return indexOf(targets, weights, degree, start, destination, weight) >= 0;
+    }
+
+    /**
+     * Remove the given node from this graph, with every edge that starts or ends at it.
+     * Takes time proportional to the number of those edges and of the edges of the node
+     * with the last handle, which is given the handle of the removed node.
+     *
+     * @param v the handle of the node that will be removed
+     * @spec.requires v is a handle of this graph
+     * @spec.modifies this
+     * @spec.effects Remove the node with handle "v" and every edge to or from it, and give
+     *               handle "v" to the node that had handle nodeCount() - 1, if it is not "v"
+     * @return the handle the moved node had before, or -1 if no node was moved
+     */
+    public int removeNode(int v) {
+        checkHandle(v);
+        while (degree[v] > 0) {
+            int i = degree[v] - 1;
+            removeEdge(v, targets[v][i], weights[v][i]);
+        }
+        while (inDegree[v] > 0) {
+            int i = inDegree[v] - 1;
+            removeEdge(sources[v][i], v, sourceWeights[v][i]);
+        }
+        handles.remove(nodes.get(v));
+        int last = nodes.size() - 1;
+        N moved = nodes.remove(last);
+        if (last == v) {
+            targets[v] = null;
+            weights[v] = null;
+            sources[v] = null;
+            sourceWeights[v] = null;
+            checkRep();
+            return -1;
+        }
+        nodes.set(v, moved);
+        handles.put(moved, v);
+        targets[v] = targets[last];
+        weights[v] = weights[last];
+        degree[v] = degree[last];
+        sources[v] = sources[last];
+        sourceWeights[v] = sourceWeights[last];
+        inDegree[v] = inDegree[last];
+        targets[last] = null;
+        weights[last] = null;
+        degree[last] = 0;
+        sources[last] = null;
+        sourceWeights[last] = null;
+        inDegree[last] = 0;
+        // the other end of every edge of the moved node still names it by its old handle
+        for (int i = 0; i < degree[v]; i++) {
+            if (targets[v][i] == last) {
+                targets[v][i] = v;
+            }
+            replace(sources, inDegree, targets[v][i], last, v);
+        }
+        for (int i = 0; i < inDegree[v]; i++) {
+            if (sources[v][i] == last) {
+                sources[v][i] = v;
+            }
+            replace(targets, degree, sources[v][i], last, v);
+        }
+        checkRep();
+        return last;
+    }
+
+    /**
+     * Set the name of the given node to the given newName. The node keeps its handle and
+     * its edges, so this takes constant time.
+     *
+     * @param v the handle of the node we want to change the name of
+     * @param newName the new name we want to change to
+     * @spec.requires v is a handle of this graph && {@code newName != null &&
+     *                (!this.contains(newName) || handleOf(newName) == v)}
+     * @spec.modifies this
+     * @spec.effects Set the name of the node with handle "v" to "newName"
+     */
+    public void renameNode(int v, N newName) {
+        checkHandle(v);
+        Integer known = newName == null ? null : handles.get(newName);
+        if (newName == null || (known != null && known != v)) {
+            throw new IllegalArgumentException();
+        }
+        handles.remove(nodes.get(v));
+        nodes.set(v, newName);
+        handles.put(newName, v);
+        checkRep();
+    }
+
+    /**
+     * Append an edge to the edge list of a node
+     * @param ends the ends of the edges of every node
+     * @param endWeights the weights of the edges of every node
+     * @param counts the number of edges of every node
+     * @param v the node whose list grows
+     * @param end the other end of the edge
+     * @param weight the weight of the edge
+     * @spec.modifies ends[v], endWeights[v], counts[v]
+     */
+    private static void append(int[][] ends, double[][] endWeights, int[] counts, int v,
+                               int end, double weight) {
+        int d = counts[v];
+        if (ends[v] == null) {
+            ends[v] = new int[4];
+            endWeights[v] = new double[4];
+        } else if (d == ends[v].length) {
+            ends[v] = Arrays.copyOf(ends[v], 2 * d);
+            endWeights[v] = Arrays.copyOf(endWeights[v], 2 * d);
+        }
+        ends[v][d] = end;
+        endWeights[v][d] = weight;
+        counts[v] = d + 1;
+    }
+
+    /**
+     * Remove an edge from the edge list of a node, moving the last edge into its place
+     * @param ends the ends of the edges of every node
+     * @param endWeights the weights of the edges of every node
+     * @param counts the number of edges of every node
+     * @param v the node whose list shrinks
+     * @param i the position of the edge in the list
+     * @spec.requires {@code 0 <= i < counts[v]}
+     * @spec.modifies ends[v], endWeights[v], counts[v]
+     */
+    private static void removeAt(int[][] ends, double[][] endWeights, int[] counts, int v,
+                                 int i) {
+        int last = --counts[v];
+        ends[v][i] = ends[v][last];
+        endWeights[v][i] = endWeights[v][last];
+    }
+
+    /**
+     * Return the position of an edge in the edge list of a node
+     * @param ends the ends of the edges of every node
+     * @param endWeights the weights of the edges of every node
+     * @param counts the number of edges of every node
+     * @param v the node whose list is searched
+     * @param end the other end of the edge
+     * @param weight the weight of the edge
+     * @return the index of the edge in ends[v], or -1 if there is no such edge
+     */
+    private static int indexOf(int[][] ends, double[][] endWeights, int[] counts, int v,
+                               int end, double weight) {
+        for (int i = 0; i < counts[v]; i++) {
+            if (ends[v][i] == end && Double.compare(endWeights[v][i], weight) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replace one end by another in the edge list of a node
+     * @param ends the ends of the edges of every node
+     * @param counts the number of edges of every node
+     * @param v the node whose list is changed
+     * @param from the end to replace
+     * @param to the end to put in its place
+     * @spec.modifies ends[v]
+     */
+    private static void replace(int[][] ends, int[] counts, int v, int from, int to) {
+        for (int i = 0; i < counts[v]; i++) {
+            if (ends[v][i] == from) {
+                ends[v][i] = to;
+            }
+        }
+    }
+
+    /**
+     * Throw an IllegalArgumentException if the given handle is not a node of this graph
+     * @param v the handle to check
+     */
+    private void checkHandle(int v) {
+        if (v < 0 || v >= nodes.size()) {
+            throw new IllegalArgumentException("not a node handle: " + v);
+        }
+    }
+
+    /**
+     * Checks if the graph contains the given node
+     * @param node the node to check
+     * @return true if this contains "node"
+     */
+    public boolean contains(N node) {
+        return handles.containsKey(node);
+    }
+
+    /**
+     * Return the handle of the given node
+     * @param node the node to look up
+     * @return the handle of "node", or -1 if it is not in this graph
+     */
+    public int handleOf(N node) {
+        Integer v = handles.get(node);
+        return v == null ? -1 : v;
+    }
+
+    /**
+     * Return the node with the given handle
+     * @param v the handle of the node
+     * @spec.requires v is a handle of this graph
+     * @return the node whose handle is "v"
+     */
+    public N getNode(int v) {
+        checkHandle(v);
+        return nodes.get(v);
+    }
+
+    /**
+     * Return an unmodifiable List of all the nodes in the graph in handle order
+     * @return an unmodifiable List whose v-th element is the node with handle v
+     */
+    public List<N> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Return the number of nodes in the graph; the handles are 0 until nodeCount()
+     * @return the number of nodes
+     */
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Return the number of edges in the graph
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Return the number of edges leaving the given node
+     * @param v the handle of the node
+     * @spec.requires v is a handle of this graph
+     * @return the out-degree of "v"
+     */
+    public int degree(int v) {
+        checkHandle(v);
+        return degree[v];
+    }
+
+    /**
+     * Return the number of edges entering the given node
+     * @param v the handle of the node
+     * @spec.requires v is a handle of this graph
+     * @return the in-degree of "v"
+     */
+    public int inDegree(int v) {
+        checkHandle(v);
+        return inDegree[v];
+    }
+
+    /**
+     * Return a new cursor over the edges leaving the nodes of this graph. A cursor can be
+     * reset to any node and reused, so walking edges allocates nothing after it is created.
+     * @return a new EdgeCursor that is not positioned on any node
+     */
+    public EdgeCursor newCursor() {
+        return new EdgeCursor(false);
+    }
+
+    /**
+     * Return a new cursor over the edges entering the nodes of this graph, like newCursor()
+     * @return a new EdgeCursor over incoming edges that is not positioned on any node
+     */
+    public EdgeCursor newIncomingCursor() {
+        return new EdgeCursor(true);
+    }
+
+    /**
+     * Returns a string representation of this graph
+     *
+     * @return a String listing every node separated by " "
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (N node : nodes) {
+            s.append(node).append(' ');
+        }
+        return s.toString().trim();
+    }
+
+    /**
+     * EdgeCursor walks the edges leaving, or entering, one node of the graph. Typical use:
+     * <pre>
+     * cursor.reset(v);
+     * while (cursor.next()) {
+     *     use(cursor.target(), cursor.weight());
+     * }
+     * </pre>
+     * The graph must not be changed while a cursor walks it.
+     */
+    public final class EdgeCursor {
+
+        /** true if the edges entering node are walked, false for those leaving it */
+        private final boolean incoming;
+
+        /** the node whose edges are walked, or -1 */
+        private int node = -1;
+
+        /** the position of the current edge in the edge list of node */
+        private int index;
+
+        /**
+         * @param incoming true to walk the edges entering a node
+         * @spec.effects Constructs a cursor that is not positioned on any node
+         */
+        private EdgeCursor(boolean incoming) {
+            this.incoming = incoming;
+        }
+
+        /**
+         * Position this cursor before the first edge of "v"
+         * @param v the handle of the node
+         * @spec.requires v is a handle of the graph
+         * @spec.modifies this
+         */
+        public void reset(int v) {
+            checkHandle(v);
+            this.node = v;
+            this.index = -1;
+        }
+
+        /**
+         * Move to the next edge
+         * @spec.modifies this
+         * @return true if there is a next edge, false once every edge has been visited
+         */
+        public boolean next() {
+            if (node < 0 || index + 1 >= (incoming ? inDegree[node] : degree[node])) {
+                return false;
+            }
+            index++;
+            return true;
+        }
+
+        /**
+         * Return the handle of the node the current edge ends at
+         * @spec.requires next() returned true
+         * @return the target of the current edge
+         */
+        public int target() {
+            return incoming ? node : targets[node][index];
+        }
+
+        /**
+         * Return the weight of the current edge
+         * @spec.requires next() returned true
+         * @return the weight of the current edge
+         */
+        public double weight() {
+            return incoming ? sourceWeights[node][index] : weights[node][index];
+        }
+
+        /**
+         * Return the handle of the node the current edge starts at
+         * @spec.requires next() returned true
+         * @return the source of the current edge
+         */
+        public int source() {
+            return incoming ? sources[node][index] : node;
+        }
+    }
+}
@@ -13,21 +13,29 @@ public class Graph<N, E> {
     /** a collection of all the nodes and edges in the graph */
     private Map<@NonNull N, Set<Graph<@NonNull N, @NonNull E>.Edge>> graph;
 
+    /** the edges ending at every node, the reverse of graph */
+    private Map<@NonNull N, Set<Graph<@NonNull N, @NonNull E>.Edge>> incoming;
+
     /** if true, run checkRep() */
     private final boolean runCheckRep = false;
 
     // Abstract Function:
-    // Each Graph, g, maps every node, n, with its possible edges (n as the parent node)
+    // Each Graph, g, maps every node, n, with its possible edges (n as the parent node).
+    // incoming maps every node with the same edges seen from their destination.
     //
     // Representation Invariant for every Graph g:
-    // graph != null
+    // graph != null && incoming != null
     // forall n in g, n != null
+    // graph.keySet().equals(incoming.keySet())
+    // forall edges e, graph.get(e.getStart()).contains(e) iff
+    //                 incoming.get(e.getDestination()).contains(e)
 
     /**
      * @spec.effects Constructs an empty Graph
      */
     public Graph() {
         this.graph = new HashMap<>();
+        this.incoming = new HashMap<>();
         checkRep();
     }
 
@@ -35,6 +43,15 @@ public class Graph<N, E> {
     private void checkRep(@UnknownInitialization(Graph.class) Graph<N, E> this) {
         if (runCheckRep) {
             assert (this.graph != null) : "graph should never be null";
+            assert (this.incoming != null) : "incoming should never be null";
+            assert (this.graph.keySet().equals(this.incoming.keySet()))
+                    : "every node should have outgoing and incoming edges";
+            for (Set<Graph<N, E>.Edge> edges : this.graph.values()) {
+                for (Graph<N, E>.Edge e : edges) {
+                    assert (this.incoming.get(e.getDestination()).contains(e))
+                            : "every edge should be indexed by its destination";
+                }
+            }
         }
     }
 
@@ -54,6 +71,7 @@ public class Graph<N, E> {
         }
         if (!this.graph.containsKey(newNode)) {
             this.graph.put(newNode, new HashSet<>());
+            this.incoming.put(newNode, new HashSet<>());
         }
         checkRep();
     }
@@ -78,26 +96,36 @@ public class Graph<N, E> {
             throw new IllegalArgumentException();
         }*/
         Graph<N, E>.Edge e = new Graph<N, E>.Edge(start, destination, label);
-        if (!this.graph.get(start).contains(e)) {
-            this.graph.get(start).add(e);
+        if (this.graph.get(start).add(e)) {
+            this.incoming.get(destination).add(e);
         }
         checkRep();
     }
 
     /**
-     * Remove the given node from this Graph
+     * Remove the given node from this Graph, with every Edge that starts or ends at it.
+     * Takes time proportional to the number of those Edges.
      *
      * @param name the node that will be removed
      * @spec.requires this.contains(name)
      * @spec.modifies this
-     * @spec.effects Remove the node "name" in this Graph
+     * @spec.effects Remove the node "name" and every Edge to or from it in this Graph
      */
+    @SuppressWarnings("KeyFor")
     public void removeNode(N name) {
         checkRep();
         if (!this.contains(name)) {
             throw new IllegalArgumentException();
         }
-        this.graph.remove(name);
+        for (Edge e : this.graph.remove(name)) {
+            this.incoming.get(e.getDestination()).remove(e);
+        }
+        for (Edge e : this.incoming.remove(name)) {
+            Set<Graph<N, E>.Edge> outgoing = this.graph.get(e.getStart());
+            if (outgoing != null) {
+                outgoing.remove(e);
+            }
+        }
         checkRep();
     }
 
@@ -111,38 +139,66 @@ public class Graph<N, E> {
      *                this.contains(edge)}
      * @spec.modifies this
      * @spec.effects Remove the Edge edge of label "label" between the given two nodes
-     *               from this Graph
+     *               from this Graph, if there is one
      */
     public void removeEdge(@KeyFor("graph") N start, @KeyFor("graph") N destination, E label) {
         checkRep();
-        if (!this.contains(start) || !this.contains(destination)) {
+        if (!this.contains(start) || !this.contains(destination) || label == null) {
             throw new IllegalArgumentException();
         }
-        for (Edge e : this.graph.get(start)) {
-            if (e.getLabel().equals(label)) {
-                this.graph.get(start).remove(e);
-                checkRep();
-                return;
-            }
+        Graph<N, E>.Edge e = new Graph<N, E>.Edge(start, destination, label);
+        if (this.graph.get(start).remove(e)) {
+            this.incoming.get(destination).remove(e);
         }
         checkRep();
     }
 
     /**
-     * Set the name of the given node to the given newName
+     * Set the name of the given node to the given newName. Every Edge that starts or ends
+     * at the node is replaced by one that starts or ends at "newName", in time proportional
+     * to the number of those Edges.
      * @param desiredNode the node we want to change the name of
      * @param newName the new name we want to change to
-     * @spec.requires {@code this.contains(desiredNode) && newName != null}
+     * @spec.requires {@code this.contains(desiredNode) && newName != null &&
+     *                !this.contains(newName)}
      * @spec.modifies this
      * @spec.effects Set the name of "desiredNode" to "newName"
      */
+    @SuppressWarnings("KeyFor")
     public void renameNode(@KeyFor("graph") N desiredNode, N newName) {
         checkRep();
-        if (!this.contains(desiredNode) || newName == null || newName.equals("")) {
+        if (!this.contains(desiredNode) || newName == null || newName.equals("")
+                || (this.contains(newName) && !newName.equals(desiredNode))) {
             throw new IllegalArgumentException();
         }
-        this.graph.put(newName, this.graph.get(desiredNode));
-        this.graph.remove(desiredNode);
+        if (newName.equals(desiredNode)) {
+            return;
+        }
+        Set<Graph<N, E>.Edge> outgoing = this.graph.remove(desiredNode);
+        Set<Graph<N, E>.Edge> incomingEdges = this.incoming.remove(desiredNode);
+        this.graph.put(newName, new HashSet<>());
+        this.incoming.put(newName, new HashSet<>());
+        for (Edge e : outgoing) {
+            Set<Graph<N, E>.Edge> to = this.incoming.get(e.getDestination());
+            if (to != null) {
+                to.remove(e);
+            }
+        }
+        for (Edge e : incomingEdges) {
+            Set<Graph<N, E>.Edge> from = this.graph.get(e.getStart());
+            if (from != null) {
+                from.remove(e);
+            }
+        }
+        for (Edge e : outgoing) {
+            N destination = e.getDestination().equals(desiredNode) ? newName : e.getDestination();
+            this.addEdge(newName, destination, e.getLabel());
+        }
+        for (Edge e : incomingEdges) {
+            if (!e.getStart().equals(desiredNode)) {
+                this.addEdge(e.getStart(), newName, e.getLabel());
+            }
+        }
         checkRep();
     }
 
@@ -202,6 +258,22 @@ public class Graph<N, E> {
         }
     }
 
+    /**
+     * Return an unmodifiable Set of all the edges that end at the given node
+     *
+     * @param target the node client wants the predecessors of
+     * @spec.requires this graph contains "target"
+     * @return an unmodifiable Set of all the edges whose destination is "target"
+     */
+    public Set<Graph<N, E>.Edge> getEdgesToANode(@KeyFor("graph") N target) {
+        checkRep();
+        if (!this.contains(target)) {
+            throw new IllegalArgumentException();
+        } else {
+            return Collections.unmodifiableSet(this.incoming.get(target));
+        }
+    }
+
     /**
      * Return a String representation of all the children of the given parent node in
      * alphabetical order in the format children1(path1) children1(path2) children2(path1) ...
@@ -0,0 +1,255 @@
+import java.util.*;
+
+/**
+ * GraphBuilder collects the nodes and weighted edges of a large graph and then freezes
+ * them into an immutable CompactGraph. It is sized up front with the expected number of
+ * nodes and edges, appends edges to flat int and double buffers without checking for
+ * duplicates, and removes duplicate edges in a single pass when it is frozen, so building
+ * a graph takes time linear in its size and allocates almost nothing per edge.
+ *
+ * A GraphBuilder can be frozen only once.
+ */
+public final class GraphBuilder<N> {
+
+    /** the node of every handle */
+    private final List<N> nodes;
+
+    /** the handle of every node */
+    private final Map<N, Integer> handles;
+
+    /** the start of every edge added so far */
+    private int[] sources;
+
+    /** the end of every edge added so far */
+    private int[] targets;
+
+    /** the weight of every edge added so far */
+    private double[] weights;
+
+    /** the number of edges added so far */
+    private int edgeCount;
+
+    /** true once freeze() has been called */
+    private boolean frozen;
+
+    // Abstract Function:
+    // Each GraphBuilder b holds the nodes nodes.get(0), ..., nodes.get(nodes.size() - 1),
+    // where the handle of nodes.get(v) is v, and for every 0 <= i < edgeCount an edge from
+    // sources[i] to targets[i] of weight weights[i], possibly more than once.
+    //
+    // Rep Invariant:
+    // nodes != null && handles != null && handles.size() == nodes.size() &&
+    // sources, targets and weights have the same length >= edgeCount &&
+    // every handle in sources[0, edgeCount) and targets[0, edgeCount) is < nodes.size() &&
+    // every weight in weights[0, edgeCount) >= 0
+
+    /**
+     * @param expectedNodes the number of nodes the graph is expected to have
+     * @param expectedEdges the number of edges the graph is expected to have
+     * @spec.requires {@code expectedNodes >= 0 && expectedEdges >= 0}
+     * @spec.effects Constructs an empty GraphBuilder with room for "expectedNodes" nodes
+     *               and "expectedEdges" edges
+     */
+    public GraphBuilder(int expectedNodes, int expectedEdges) {
+        if (expectedNodes < 0 || expectedEdges < 0) {
+            throw new IllegalArgumentException("expected sizes should not be negative");
+        }
+        this.nodes = new ArrayList<>(expectedNodes);
+        this.handles = new HashMap<>(expectedNodes * 4 / 3 + 1);
+        int capacity = Math.max(expectedEdges, 16);
+        this.sources = new int[capacity];
+        this.targets = new int[capacity];
+        this.weights = new double[capacity];
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (nodes != null && handles != null);
+        assert (handles.size() == nodes.size());
+        assert (sources.length == targets.length && targets.length == weights.length);
+        assert (edgeCount <= sources.length);
+    }
+
+    /**
+     * Add the given node if it has not been added yet
+     * @param node the node to add
+     * @spec.requires {@code node != null}
+     * @spec.modifies this
+     * @throws IllegalStateException if this builder has been frozen
+     * @return the handle of "node"
+     */
+    public int addNode(N node) {
+        checkNotFrozen();
+        if (node == null) {
+            throw new IllegalArgumentException();
+        }
+        Integer known = handles.get(node);
+        if (known != null) {
+            return known;
+        }
+        int v = nodes.size();
+        nodes.add(node);
+        handles.put(node, v);
+        return v;
+    }
+
+    /**
+     * Add an edge between two nodes that have been added. Adding the same edge more than
+     * once has the same effect as adding it once.
+     * @param start the handle of the start of the edge
+     * @param destination the handle of the end of the edge
+     * @param weight the weight of the edge
+     * @spec.requires start and destination are handles returned by addNode
+     * @spec.modifies this
+     * @throws IllegalArgumentException if a handle is unknown or "weight" is negative
+     * @throws IllegalStateException if this builder has been frozen
+     */
+    public void addEdge(int start, int destination, double weight) {
+        checkNotFrozen();
+        if (start < 0 || start >= nodes.size() || destination < 0
+                || destination >= nodes.size()) {
+            throw new IllegalArgumentException("not a node handle");
+        }
+        if (!(weight >= 0)) {
+            throw new IllegalArgumentException("negative length: " + weight);
+        }
+        if (edgeCount == sources.length) {
+            int capacity = 2 * edgeCount;
+            sources = Arrays.copyOf(sources, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        sources[edgeCount] = start;
+        targets[edgeCount] = destination;
+        weights[edgeCount] = weight;
+        edgeCount++;
+    }
+
+    /**
+     * Add an edge between two nodes, adding the nodes first if needed
+     * @param start the start of the edge
+     * @param destination the end of the edge
+     * @param weight the weight of the edge
+     * @spec.requires {@code start != null && destination != null}
+     * @spec.modifies this
+     * @throws IllegalArgumentException if "weight" is negative
+     * @throws IllegalStateException if this builder has been frozen
+     */
+    public void addEdge(N start, N destination, double weight) {
+        int from = addNode(start);
+        addEdge(from, addNode(destination), weight);
+    }
+
+    /**
+     * Return the number of nodes added so far
+     * @return the number of nodes
+     */
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Return the number of edges added so far, counting duplicates
+     * @return the number of calls to addEdge
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Return an immutable graph of the nodes and edges added so far. Node v of the result
+     * is the node with handle v, and the edges leaving every node are ordered by their end.
+     * Duplicate edges are kept once.
+     * @spec.modifies this
+     * @throws IllegalStateException if this builder has been frozen before
+     * @return a CompactGraph with the nodes and edges of this builder
+     */
+    @SuppressWarnings("unchecked")
+    public CompactGraph<N> freeze() {
+        checkNotFrozen();
+        frozen = true;
+        int n = nodes.size();
+
+        // group the edges by start with a counting sort
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[sources[i] + 1]++;
+        }
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            maxDegree = Math.max(maxDegree, offsets[v + 1]);
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] groupedTargets = new int[edgeCount];
+        double[] groupedWeights = new double[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            int slot = next[sources[i]]++;
+            groupedTargets[slot] = targets[i];
+            groupedWeights[slot] = weights[i];
+        }
+
+        // order the edges of every node by end and drop duplicates, compacting in place;
+        // the weights of a node are copied out first since compaction overwrites them
+        long[] keys = new long[maxDegree];
+        double[] nodeWeights = new double[maxDegree];
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            int first = offsets[v];
+            int degree = offsets[v + 1] - first;
+            offsets[v] = e;
+            for (int i = 0; i < degree; i++) {
+                keys[i] = ((long) groupedTargets[first + i] << 32) | i;
+            }
+            System.arraycopy(groupedWeights, first, nodeWeights, 0, degree);
+            Arrays.sort(keys, 0, degree);
+            int runStart = e;
+            int runTarget = -1;
+            for (int i = 0; i < degree; i++) {
+                int target = (int) (keys[i] >>> 32);
+                double weight = nodeWeights[(int) keys[i]];
+                if (target != runTarget) {
+                    runTarget = target;
+                    runStart = e;
+                }
+                if (!containsWeight(groupedWeights, runStart, e, weight)) {
+                    groupedTargets[e] = target;
+                    groupedWeights[e] = weight;
+                    e++;
+                }
+            }
+        }
+        offsets[n] = e;
+
+        N[] nodeArray = (N[]) nodes.toArray();
+        return CompactGraph.fromArrays(nodeArray, new HashMap<>(handles), offsets,
+                Arrays.copyOf(groupedTargets, e), Arrays.copyOf(groupedWeights, e));
+    }
+
+    /**
+     * Checks if a weight appears in part of an array
+     * @param weights the array to look in
+     * @param from the first position to look at
+     * @param to one past the last position to look at
+     * @param weight the weight to look for
+     * @return true if weights[i] equals "weight" for some from &lt;= i &lt; to
+     */
+    private static boolean containsWeight(double[] weights, int from, int to, double weight) {
+        for (int i = from; i < to; i++) {
+            if (Double.compare(weights[i], weight) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Throw an IllegalStateException if this builder has been frozen
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("the graph has already been frozen");
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * HeavyHitters keeps track of the most frequent keys of a stream in a fixed amount of
+ * memory. Every key is counted in a count-min sketch, which never undercounts and, with
+ * high probability, overcounts by only a small fraction of the stream; the capacity keys
+ * with the highest estimates are remembered with their estimates. The remembered keys can
+ * be saved to a file and loaded back, so that popularity survives a restart.
+ *
+ * A saved file has one key per line, most frequent first: the estimated count, a tab and
+ * the key. Keys must not contain line breaks.
+ */
+public final class HeavyHitters {
+
+    /** the number of rows of the sketch */
+    private static final int DEPTH = 4;
+
+    /** log2 of the number of counters in every row of the sketch */
+    private static final int WIDTH_BITS = 12;
+
+    /** the counters of the sketch, row after row */
+    private final int[] sketch = new int[DEPTH << WIDTH_BITS];
+
+    /** the largest number of keys remembered */
+    private final int capacity;
+
+    /** the remembered keys and their estimated counts */
+    private final Map<String, Integer> top = new HashMap<>();
+
+    /** a remembered key with the smallest count, or null if it has to be looked up */
+    private @Nullable String smallest;
+
+    // Abstract Function:
+    // Each HeavyHitters h estimates the number of times every key was added as the
+    // smallest of its DEPTH counters in h.sketch, and h.top holds up to h.capacity of the
+    // keys with the highest estimates.
+    //
+    // Rep Invariant:
+    // capacity > 0 && top.size() <= capacity && every count in top > 0 &&
+    // smallest == null || top.containsKey(smallest)
+
+    /**
+     * @param capacity the largest number of keys remembered
+     * @spec.requires {@code capacity > 0}
+     * @spec.effects Constructs a HeavyHitters that has counted nothing
+     */
+    public HeavyHitters(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive");
+        }
+        this.capacity = capacity;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (capacity > 0);
+        assert (top.size() <= capacity);
+        assert (smallest == null || top.containsKey(smallest));
+    }
+
+    /**
+     * Count one occurrence of a key
+     * @param key the key
+     * @spec.modifies this
+     */
+    public synchronized void add(String key) {
+        add(key, 1);
+    }
+
+    /**
+     * Count occurrences of a key. Only the counters of the key that are at its smallest
+     * count are raised, which keeps the overcounting of other keys low.
+     * @param key the key
+     * @param count the number of occurrences
+     * @spec.requires {@code count > 0}
+     * @spec.modifies this
+     */
+    private void add(String key, int count) {
+        int estimate = Integer.MAX_VALUE;
+        int[] slots = new int[DEPTH];
+        for (int row = 0; row < DEPTH; row++) {
+            slots[row] = slot(key, row);
+            estimate = Math.min(estimate, sketch[slots[row]]);
+        }
+        int updated = (int) Math.min(Integer.MAX_VALUE, (long) estimate + count);
+        for (int slot : slots) {
+            sketch[slot] = Math.max(sketch[slot], updated);
+        }
+
+        if (top.containsKey(key)) {
+            top.put(key, updated);
+            if (key.equals(smallest)) {
+                smallest = null;
+            }
+        } else if (top.size() < capacity) {
+            top.put(key, updated);
+            if (smallest != null && updated < top.get(smallest)) {
+                smallest = key;
+            }
+        } else {
+            if (smallest == null) {
+                smallest = findSmallest();
+            }
+            if (updated > top.get(smallest)) {
+                top.remove(smallest);
+                top.put(key, updated);
+                smallest = null;
+            }
+        }
+    }
+
+    /**
+     * Return the remembered keys with the highest estimated counts
+     * @param k the largest number of keys to return
+     * @return up to k keys, most frequent first
+     */
+    public synchronized List<String> top(int k) {
+        List<Map.Entry<String, Integer>> entries = sortedEntries();
+        List<String> result = new ArrayList<>(Math.min(k, entries.size()));
+        for (int i = 0; i < entries.size() && i < k; i++) {
+            result.add(entries.get(i).getKey());
+        }
+        return result;
+    }
+
+    /**
+     * Save the remembered keys and their counts, replacing the file atomically so that a
+     * crash never leaves a partly written one
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        List<Map.Entry<String, Integer>> entries;
+        synchronized (this) {
+            entries = sortedEntries();
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temporary), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, Integer> entry : entries) {
+                out.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Count the keys of a saved file again, halving their counts so that old popularity
+     * fades as new traffic is counted
+     * @param file a file written by save
+     * @spec.modifies this
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void load(File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    throw new IllegalArgumentException("Malformed line in " + file + ": "
+                            + line);
+                }
+                int count = Integer.parseInt(line.substring(0, tab)) / 2;
+                if (count > 0) {
+                    add(line.substring(tab + 1), count);
+                }
+            }
+        }
+        checkRep();
+    }
+
+    /**
+     * Return the remembered keys with their counts
+     * @return the entries of top, highest count first and ties in key order
+     */
+    private List<Map.Entry<String, Integer>> sortedEntries() {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(top.entrySet());
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        return entries;
+    }
+
+    /**
+     * Return a remembered key with the smallest count
+     * @return a key of top whose count is smallest, or null if top is empty
+     */
+    private @Nullable String findSmallest() {
+        String result = null;
+        int count = Integer.MAX_VALUE;
+        for (Map.Entry<String, Integer> entry : top.entrySet()) {
+            if (entry.getValue() < count) {
+                result = entry.getKey();
+                count = entry.getValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the counter of a key in a row of the sketch
+     * @param key the key
+     * @param row the row
+     * @return the index in sketch of the counter of "key" in "row"
+     */
+    private static int slot(String key, int row) {
+        int h = key.hashCode() * 0x9E3779B9 + row * 0x85EBCA6B;
+        h ^= h >>> 16;
+        h *= 0x7FEB352D;
+        h ^= h >>> 15;
+        return (row << WIDTH_BITS) | (h & ((1 << WIDTH_BITS) - 1));
+    }
+}
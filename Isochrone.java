@@ -0,0 +1,206 @@
+import java.util.*;
+
+/**
+ * Isochrone represents everything that can be reached from a building on campus by
+ * walking at most a given distance: the reachable buildings with their walking distances
+ * and, optionally, the boundary polygon of the reachable area.
+ */
+public final class Isochrone {
+
+    /** the building the walks start from */
+    private final Building origin;
+
+    /** the largest walking distance, in feet */
+    private final double budget;
+
+    /** the reachable buildings ordered by walking distance */
+    private final List<Destination> destinations;
+
+    /** the number of path nodes within budget */
+    private final int nodeCount;
+
+    /** the corners of the convex boundary of the reachable area, in order around it */
+    private final List<Coordinates> boundary;
+
+    // Abstract Function:
+    // Each Isochrone i represents the area within i.budget feet of walking from i.origin.
+    // i.destinations lists the buildings in that area, i.nodeCount counts the path nodes
+    // in that area and i.boundary is the convex polygon around those nodes (empty if it
+    // was not asked for).
+    //
+    // Rep Invariant:
+    // origin != null && budget >= 0 && destinations != null && boundary != null &&
+    // nodeCount >= 0
+
+    /**
+     * Constructs a new Isochrone
+     * @param origin the building the walks start from
+     * @param budget the largest walking distance, in feet
+     * @param destinations the reachable buildings ordered by walking distance
+     * @param nodeCount the number of path nodes within "budget"
+     * @param boundary the corners of the boundary of the reachable area
+     * @spec.requires {@code origin != null && budget >= 0 && destinations != null &&
+     *                boundary != null && nodeCount >= 0}
+     * @spec.effects Constructs a new Isochrone with the given values
+     */
+    public Isochrone(Building origin, double budget, List<Destination> destinations,
+                     int nodeCount, List<Coordinates> boundary) {
+        this.origin = origin;
+        this.budget = budget;
+        this.destinations = Collections.unmodifiableList(new ArrayList<>(destinations));
+        this.nodeCount = nodeCount;
+        this.boundary = Collections.unmodifiableList(new ArrayList<>(boundary));
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (origin != null);
+        assert (budget >= 0);
+        assert (destinations != null && boundary != null);
+        assert (nodeCount >= 0);
+    }
+
+    /**
+     * Getter method for the building the walks start from
+     * @return the origin Building
+     */
+    public Building getOrigin() {
+        return this.origin;
+    }
+
+    /**
+     * Getter method for the largest walking distance
+     * @return the largest walking distance, in feet
+     */
+    public double getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Getter method for the reachable buildings
+     * @return an unmodifiable List of the reachable buildings ordered by walking distance
+     */
+    public List<Destination> getDestinations() {
+        return this.destinations;
+    }
+
+    /**
+     * Getter method for the number of reachable path nodes
+     * @return the number of path nodes within walking distance
+     */
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * Getter method for the boundary of the reachable area
+     * @return an unmodifiable List of the corners of the boundary in order around it,
+     * or an empty List if the boundary was not computed
+     */
+    public List<Coordinates> getBoundary() {
+        return this.boundary;
+    }
+
+    /**
+     * Return a copy of this Isochrone without the boundary polygon
+     * @return an Isochrone equal to this except that its boundary is empty
+     */
+    public Isochrone withoutBoundary() {
+        if (this.boundary.isEmpty()) {
+            return this;
+        }
+        return new Isochrone(origin, budget, destinations, nodeCount,
+                Collections.<Coordinates>emptyList());
+    }
+
+    /**
+     * Return the convex hull of the given points, using Andrew's monotone chain
+     * @param points the points to enclose
+     * @return a List of the corners of the smallest convex polygon containing every
+     * point, in order around it starting from the lowest x coordinate
+     */
+    public static List<Coordinates> convexHull(Collection<Coordinates> points) {
+        List<Coordinates> sorted = new ArrayList<>(points);
+        sorted.sort(new Comparator<Coordinates>() {
+            @Override
+            public int compare(Coordinates c1, Coordinates c2) {
+                int byX = Double.compare(c1.getX(), c2.getX());
+                return byX != 0 ? byX : Double.compare(c1.getY(), c2.getY());
+            }
+        });
+        if (sorted.size() < 3) {
+            return sorted;
+        }
+        Coordinates[] hull = new Coordinates[2 * sorted.size()];
+        int size = 0;
+        // lower chain, then upper chain
+        for (Coordinates c : sorted) {
+            while (size >= 2 && cross(hull[size - 2], hull[size - 1], c) <= 0) {
+                size--;
+            }
+            hull[size++] = c;
+        }
+        int lower = size + 1;
+        for (int i = sorted.size() - 2; i >= 0; i--) {
+            Coordinates c = sorted.get(i);
+            while (size >= lower && cross(hull[size - 2], hull[size - 1], c) <= 0) {
+                size--;
+            }
+            hull[size++] = c;
+        }
+        return new ArrayList<>(Arrays.asList(hull).subList(0, size - 1));
+    }
+
+    /**
+     * Return the z component of the cross product of (a, b) and (a, c)
+     * @param a the shared start of both vectors
+     * @param b the end of the first vector
+     * @param c the end of the second vector
+     * @return a positive number if a, b, c turn one way, a negative number if they turn
+     * the other way and 0 if they are collinear
+     */
+    private static double cross(Coordinates a, Coordinates b, Coordinates c) {
+        return (b.getX() - a.getX()) * (c.getY() - a.getY())
+                - (b.getY() - a.getY()) * (c.getX() - a.getX());
+    }
+
+    /**
+     * Destination is a reachable building together with its walking distance
+     */
+    public static final class Destination {
+
+        /** the reachable building */
+        private final Building building;
+
+        /** the length of the shortest walk to building, in feet */
+        private final double distance;
+
+        /**
+         * @param building the reachable building
+         * @param distance the length of the shortest walk to "building"
+         * @spec.requires {@code building != null && distance >= 0}
+         * @spec.effects Constructs a new Destination
+         */
+        public Destination(Building building, double distance) {
+            this.building = building;
+            this.distance = distance;
+        }
+
+        /**
+         * Getter method for the reachable building
+         * @return the reachable Building
+         */
+        public Building getBuilding() {
+            return this.building;
+        }
+
+        /**
+         * Getter method for the walking distance
+         * @return the length of the shortest walk to the building, in feet
+         */
+        public double getDistance() {
+            return this.distance;
+        }
+    }
+}
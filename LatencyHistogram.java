@@ -0,0 +1,180 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram counts durations in logarithmic buckets so that percentiles can be
+ * reported for any number of samples in constant memory. Every power of two is split into
+ * SUB_BUCKETS buckets, so a reported percentile is within about 3% of the true one.
+ * Samples can be recorded from many threads at once without locking.
+ */
+public final class LatencyHistogram {
+
+    /** the number of buckets every power of two is split into */
+    private static final int SUB_BUCKETS = 32;
+
+    /** log2(SUB_BUCKETS) */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** the number of samples in every bucket */
+    private final AtomicLongArray counts;
+
+    /** the number of samples */
+    private final AtomicLong total = new AtomicLong();
+
+    /** the sum of all samples, in nanoseconds */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** the largest sample, in nanoseconds */
+    private final AtomicLong max = new AtomicLong();
+
+    // Abstract Function:
+    // Each LatencyHistogram h is a multiset of durations: counts.get(b) of them lie in the
+    // range of bucket b (see bucketOf), total is their number, sum their sum and max the
+    // largest of them, all in nanoseconds.
+    //
+    // Rep Invariant:
+    // counts != null && the elements of counts add up to total && every count >= 0
+
+    /**
+     * @spec.effects Constructs an empty LatencyHistogram
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    }
+
+    /**
+     * Record one duration
+     * @param nanos the duration, in nanoseconds; negative durations count as 0
+     * @spec.modifies this
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Add every sample of another histogram to this one
+     * @param other the histogram whose samples are added
+     * @spec.modifies this
+     */
+    public void add(LatencyHistogram other) {
+        for (int b = 0; b < counts.length(); b++) {
+            long count = other.counts.get(b);
+            if (count != 0) {
+                counts.addAndGet(b, count);
+            }
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current = max.get();
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Return the number of recorded samples
+     * @return the number of samples
+     */
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * Return the mean of the recorded samples
+     * @return the mean duration in nanoseconds, or 0 if there are no samples
+     */
+    public double mean() {
+        long n = total.get();
+        return n == 0 ? 0.0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Return the largest recorded sample
+     * @return the largest duration in nanoseconds, or 0 if there are no samples
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Return a percentile of the recorded samples
+     * @param percentile the percentile, such as 50 for the median or 99.9
+     * @spec.requires {@code 0 <= percentile <= 100}
+     * @return the upper end of the bucket holding the sample at "percentile", in
+     * nanoseconds, or 0 if there are no samples
+     */
+    public long percentile(double percentile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int b = 0; b < counts.length(); b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(upperEndOf(b), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Return a one-line summary of the samples in milliseconds
+     * @return the count, mean, median, 90th, 99th and 99.9th percentiles and maximum
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms "
+                        + "p99.9=%.3fms max=%.3fms", count(), millis(mean()),
+                millis(percentile(50)), millis(percentile(90)), millis(percentile(99)),
+                millis(percentile(99.9)), millis(max()));
+    }
+
+    /**
+     * Return the bucket a duration falls in. Durations below SUB_BUCKETS have a bucket
+     * each; larger ones are bucketed by their highest SUB_BUCKET_BITS + 1 bits.
+     * @param nanos a non-negative duration
+     * @return the index of the bucket of "nanos"
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        int sub = (int) (nanos >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Return the largest duration in a bucket
+     * @param bucket the index of a bucket
+     * @return the largest duration, in nanoseconds, that falls in "bucket"
+     */
+    private static long upperEndOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long low = (SUB_BUCKETS + sub) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * Convert nanoseconds to milliseconds
+     * @param nanos a duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,88 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LruCache is a thread-safe, size-bounded cache that evicts the least recently used
+ * entry once it holds more than its capacity.
+ */
+public class LruCache<K, V> {
+
+    /** the cached entries in access order, least recently used first */
+    private final LinkedHashMap<K, V> entries;
+
+    /** the largest number of entries this holds */
+    private final int capacity;
+
+    // Abstract Function:
+    // Each LruCache c maps at most c.capacity keys to values, and remembers the order
+    // in which they were last used.
+    //
+    // Rep Invariant:
+    // entries != null && capacity > 0 && entries.size() <= capacity
+
+    /**
+     * Constructs an empty cache
+     * @param capacity the largest number of entries the cache holds
+     * @spec.requires {@code capacity > 0}
+     * @spec.effects Constructs an empty cache that holds at most "capacity" entries
+     */
+    public LruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (entries != null);
+        assert (entries.size() <= capacity);
+    }
+
+    /**
+     * Return the value cached for the given key and mark it as recently used
+     * @param key the key to look up
+     * @return the cached value, or null if "key" is not cached
+     */
+    public synchronized @Nullable V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Cache the given value under the given key
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @spec.modifies this
+     * @spec.effects maps "key" to "value", evicting the least recently used entry if
+     *               this is full
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+        checkRep();
+    }
+
+    /**
+     * Remove every entry from this cache
+     * @spec.modifies this
+     * @spec.effects this is empty
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Return the number of cached entries
+     * @return the number of cached entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
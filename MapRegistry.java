@@ -0,0 +1,272 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * MapRegistry hosts several named maps in one server. A map is loaded the first time it
+ * is asked for; concurrent first requests for the same map share one load. The loaded
+ * maps are kept while their estimated sizes add up to at most a memory budget: loading a
+ * map that does not fit evicts the least recently used other maps until it does. A map
+ * larger than the whole budget is still loaded, but then it is the only one kept.
+ *
+ * Every load and eviction is printed to standard output, and getStats() reports the
+ * state, size and load and eviction counts of every map.
+ */
+public final class MapRegistry<M> {
+
+    /** the ids of the maps that can be loaded, in the order they were defined */
+    private final List<String> ids;
+
+    /** loads a map from its id */
+    private final Function<String, M> loader;
+
+    /** estimates the size of a loaded map, in bytes */
+    private final ToLongFunction<M> sizer;
+
+    /** the largest total estimated size of the loaded maps, in bytes */
+    private final long maxBytes;
+
+    /** the loaded maps in access order, least recently used first */
+    private final LinkedHashMap<String, Loaded<M>> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** the estimated size of the loaded maps, in bytes */
+    private long usedBytes;
+
+    /** the number of times every map was loaded */
+    private final Map<String, Integer> loads = new HashMap<>();
+
+    /** the number of times every map was evicted */
+    private final Map<String, Integer> evictions = new HashMap<>();
+
+    /** the loads running now, so that concurrent first requests share one */
+    private final SingleFlight<String, M> loading = new SingleFlight<>(Integer.MAX_VALUE);
+
+    // Abstract Function:
+    // Each MapRegistry r can serve the maps r.ids; the maps in r.loaded are in memory, most
+    // recently used last, and take r.usedBytes bytes in total.
+    //
+    // Rep Invariant:
+    // ids, loader, sizer, loaded, loads and evictions != null && maxBytes > 0 &&
+    // usedBytes is the sum of the sizes in loaded && every key of loaded is in ids &&
+    // (usedBytes <= maxBytes || loaded.size() <= 1)
+
+    /**
+     * @param ids the ids of the maps that can be loaded
+     * @param loader loads a map from its id
+     * @param sizer estimates the size of a loaded map, in bytes
+     * @param maxBytes the largest total estimated size of the loaded maps, in bytes
+     * @spec.requires {@code maxBytes > 0} and "ids" has no duplicates
+     * @spec.effects Constructs a MapRegistry with no maps loaded
+     */
+    public MapRegistry(Collection<String> ids, Function<String, M> loader,
+                       ToLongFunction<M> sizer, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes should be positive");
+        }
+        this.ids = Collections.unmodifiableList(new ArrayList<>(ids));
+        this.loader = loader;
+        this.sizer = sizer;
+        this.maxBytes = maxBytes;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (ids != null && loader != null && sizer != null && loaded != null);
+        assert (maxBytes > 0);
+        assert (usedBytes <= maxBytes || loaded.size() <= 1);
+    }
+
+    /**
+     * Return the map with the given id, loading it if it is not loaded
+     * @param id the id of the map
+     * @throws IllegalArgumentException if there is no map called "id"
+     * @return the map called "id"
+     */
+    public M get(String id) {
+        synchronized (this) {
+            Loaded<M> map = loaded.get(id);
+            if (map != null) {
+                return map.value;
+            }
+        }
+        if (!ids.contains(id)) {
+            throw new IllegalArgumentException("Unknown map: " + id);
+        }
+        return loading.execute(id, () -> load(id));
+    }
+
+    /**
+     * Return the map with the given id if it is loaded, without loading it. This counts
+     * as a use of the map.
+     * @param id the id of the map
+     * @return the map called "id", or null if it is not loaded
+     */
+    public synchronized @Nullable M getIfLoaded(String id) {
+        Loaded<M> map = loaded.get(id);
+        return map == null ? null : map.value;
+    }
+
+    /**
+     * Load a map and make room for it
+     * @param id the id of the map
+     * @spec.modifies this
+     * @return the loaded map
+     */
+    private M load(String id) {
+        synchronized (this) {
+            // another load may have finished since get() looked
+            Loaded<M> map = loaded.get(id);
+            if (map != null) {
+                return map.value;
+            }
+        }
+        long begin = System.nanoTime();
+        M value = loader.apply(id);
+        long bytes = sizer.applyAsLong(value);
+        long millis = (System.nanoTime() - begin) / 1_000_000;
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Loaded<M>>> oldest = loaded.entrySet().iterator();
+            while (usedBytes + bytes > maxBytes && oldest.hasNext()) {
+                Map.Entry<String, Loaded<M>> entry = oldest.next();
+                oldest.remove();
+                usedBytes -= entry.getValue().bytes;
+                evictions.merge(entry.getKey(), 1, Integer::sum);
+                evicted.add(entry.getKey());
+            }
+            loaded.put(id, new Loaded<>(value, bytes));
+            usedBytes += bytes;
+            loads.merge(id, 1, Integer::sum);
+            checkRep();
+        }
+        for (String other : evicted) {
+            System.out.println("Evicted map " + other + " to make room for " + id);
+        }
+        System.out.printf("Loaded map %s in %d ms, about %d KiB%n", id, millis, bytes >> 10);
+        return value;
+    }
+
+    /**
+     * Return the state of every map
+     * @return a List of the Stats of every map, in the order the ids were given
+     */
+    public synchronized List<Stats> getStats() {
+        List<Stats> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Loaded<M> map = loaded.get(id);
+            result.add(new Stats(id, map != null, map == null ? 0 : map.bytes,
+                    loads.getOrDefault(id, 0), evictions.getOrDefault(id, 0)));
+        }
+        return result;
+    }
+
+    /**
+     * Loaded is a loaded map and its estimated size
+     */
+    private static final class Loaded<M> {
+
+        /** the map */
+        final M value;
+
+        /** the estimated size of value, in bytes */
+        final long bytes;
+
+        /**
+         * @param value the map
+         * @param bytes the estimated size of "value", in bytes
+         * @spec.effects Constructs a Loaded with the given fields
+         */
+        Loaded(M value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Stats is an immutable snapshot of the state of one map
+     */
+    public static final class Stats {
+
+        /** the id of the map */
+        private final String id;
+
+        /** whether the map is loaded */
+        private final boolean loaded;
+
+        /** the estimated size of the map if it is loaded, in bytes */
+        private final long bytes;
+
+        /** the number of times the map was loaded */
+        private final int loads;
+
+        /** the number of times the map was evicted */
+        private final int evictions;
+
+        // Abstract Function:
+        // Each Stats s describes map s.id when it was taken: whether it was loaded, its
+        // estimated size in bytes (0 if not loaded) and how often it had been loaded and
+        // evicted.
+        //
+        // Rep Invariant:
+        // id != null && bytes >= 0 && loads >= evictions >= 0
+
+        /**
+         * @param id the id of the map
+         * @param loaded whether the map is loaded
+         * @param bytes the estimated size of the map if it is loaded, in bytes
+         * @param loads the number of times the map was loaded
+         * @param evictions the number of times the map was evicted
+         * @spec.effects Constructs a Stats with the given fields
+         */
+        Stats(String id, boolean loaded, long bytes, int loads, int evictions) {
+            this.id = id;
+            this.loaded = loaded;
+            this.bytes = bytes;
+            this.loads = loads;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Return the id of the map
+         * @return the id of the map described
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Return whether the map is loaded
+         * @return true if the map was in memory when this was taken
+         */
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        /**
+         * Return the estimated size of the map
+         * @return the estimated size of the map in bytes, or 0 if it is not loaded
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Return the number of times the map was loaded
+         * @return the number of loads of the map
+         */
+        public int getLoads() {
+            return loads;
+        }
+
+        /**
+         * Return the number of times the map was evicted
+         * @return the number of evictions of the map
+         */
+        public int getEvictions() {
+            return evictions;
+        }
+    }
+}
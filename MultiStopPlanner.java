@@ -0,0 +1,382 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MultiStopPlanner finds a short walk through a list of stops on a CompactGraph. It computes
+ * the distances between every pair of stops, orders the stops with a nearest-neighbour tour
+ * improved by 2-opt and Or-opt moves until no move helps or a time budget runs out, and
+ * stitches the shortest paths between consecutive stops into one walk.
+ *
+ * The distances are found with one shortest path tree per stop. The trees are built in
+ * parallel by the calling thread and up to parallelism - 1 tasks on a bounded executor,
+ * each thread building one tree at a time on a workspace borrowed from the pool, so a
+ * plan uses at most parallelism threads and workspaces however many stops it has. If the
+ * executor is busy, the calling thread builds the trees left. Each tree keeps the edges of
+ * its paths to the other stops, so the walk is stitched from them without searching again.
+ */
+public class MultiStopPlanner<N> {
+
+    /** the longest segment of stops an Or-opt move relocates */
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+
+    /** the graph walks are planned in */
+    private final CompactGraph<N> graph;
+
+    /** the workspaces the per-stop trees borrow */
+    private final SearchWorkspacePool pool;
+
+    /** runs the per-stop trees that the calling thread does not build itself */
+    private final Executor executor;
+
+    /** the largest number of threads building the trees of one plan, the caller included */
+    private final int parallelism;
+
+    // Abstract Function:
+    // Each MultiStopPlanner p plans walks through stops in p.graph, building the trees of a
+    // plan on at most p.parallelism threads, the caller's and those of p.executor.
+    //
+    // Rep Invariant:
+    // graph != null && pool != null && executor != null && parallelism >= 1
+
+    /**
+     * Constructs a planner for the given graph
+     * @param graph the graph walks are planned in
+     * @param pool the pool searches borrow workspaces from, made for "graph"
+     * @param executor runs the per-stop trees the calling thread does not build; it should
+     *                 have a bounded number of threads and reject work when it is saturated
+     * @param parallelism the largest number of threads building the trees of one plan,
+     *                    the calling thread included
+     * @spec.requires {@code graph != null && pool != null && executor != null}
+     * @throws IllegalArgumentException if {@code parallelism < 1}
+     * @spec.effects Constructs a new MultiStopPlanner
+     */
+    public MultiStopPlanner(CompactGraph<N> graph, SearchWorkspacePool pool, Executor executor,
+                            int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism should be positive");
+        }
+        this.graph = graph;
+        this.pool = pool;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (graph != null);
+        assert (pool != null);
+        assert (executor != null && parallelism >= 1);
+    }
+
+    /**
+     * Return a short walk visiting every stop exactly once
+     * @param stops the nodes to visit
+     * @param fixedStart if true, the walk starts at the first stop
+     * @param fixedEnd if true, the walk ends at the last stop
+     * @param timeBudgetMillis how long the order may be improved for, in milliseconds
+     * @spec.requires {@code stops.size() >= 2} and every stop is a distinct node of graph
+     * @return a Plan of the visiting order and the full walk, or null if some stop cannot
+     * be reached from the others in any order
+     */
+    public @Nullable Plan<N> plan(List<N> stops, boolean fixedStart, boolean fixedEnd,
+                                  long timeBudgetMillis) {
+        checkRep();
+        int n = stops.size();
+        if (n < 2 || new HashSet<>(stops).size() != n) {
+            throw new IllegalArgumentException("stops should contain at least two distinct nodes");
+        }
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+
+        // one tree per stop, grown until it has reached every other stop
+        double[][] distances = new double[n][];
+        int[][][] legs = new int[n][][];
+        buildTrees(stops, distances, legs);
+
+        int[] order = nearestNeighbour(distances, fixedStart, fixedEnd);
+        if (Double.isInfinite(cost(distances, order))) {
+            return null;
+        }
+        improve(distances, order, fixedStart ? 1 : 0, fixedEnd ? n - 2 : n - 1, deadline);
+
+        List<N> visits = new ArrayList<>(n);
+        List<Graph<N, Double>.Edge> walk = new ArrayList<>();
+        visits.add(stops.get(order[0]));
+        for (int i = 1; i < n; i++) {
+            visits.add(stops.get(order[i]));
+            for (int e : legs[order[i - 1]][order[i]]) {
+                walk.add(graph.edge(e));
+            }
+        }
+        return new Plan<>(visits, walk, cost(distances, order));
+    }
+
+    /**
+     * Build the shortest path tree of every stop, on the calling thread and on up to
+     * parallelism - 1 tasks of the executor, and return when all of them are built
+     * @param stops the stops
+     * @param distances receives in distances[i][j] the distance from stop i to stop j
+     * @param legs receives in legs[i][j] the edge numbers of the shortest path from stop i
+     *             to stop j, or null if there is none
+     * @throws RejectedExecutionException if the calling thread is interrupted while it
+     * waits for the other threads
+     * @spec.modifies distances, legs
+     */
+    private void buildTrees(List<N> stops, double[][] distances, int[][][] legs) {
+        int n = stops.size();
+        AtomicInteger nextStop = new AtomicInteger();
+        CountDownLatch built = new CountDownLatch(n);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Runnable builder = () -> {
+            for (int i = nextStop.getAndIncrement(); i < n; i = nextStop.getAndIncrement()) {
+                try {
+                    buildTree(stops, i, distances, legs);
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    built.countDown();
+                }
+            }
+        };
+        try {
+            for (int t = 1; t < Math.min(n, parallelism); t++) {
+                executor.execute(builder);
+            }
+        } catch (RejectedExecutionException e) {
+            // the executor is saturated, so the threads already started build the rest
+        }
+        builder.run();
+        try {
+            built.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a search");
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Build the shortest path tree of one stop until it reaches every other stop
+     * @param stops the stops
+     * @param i the position of the stop the tree is rooted at
+     * @param distances receives in distances[i][j] the distance from stop i to stop j
+     * @param legs receives in legs[i][j] the edge numbers of the shortest path from stop i
+     *             to stop j, or null if there is none
+     * @spec.modifies distances[i], legs[i]
+     */
+    private void buildTree(List<N> stops, int i, double[][] distances, int[][][] legs) {
+        int n = stops.size();
+        double[] row = new double[n];
+        int[][] paths = new int[n][];
+        try (ShortestPathTree<N> tree = ShortestPathTree.from(graph, pool, stops.get(i))) {
+            for (int j = 0; j < n; j++) {
+                N stop = stops.get(j);
+                if (tree.searchTo(stop)) {
+                    row[j] = tree.getDistance(stop);
+                    paths[j] = tree.getPathEdges(stop);
+                } else {
+                    row[j] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        distances[i] = row;
+        legs[i] = paths;
+    }
+
+    /**
+     * Return the order found by always walking to the nearest unvisited stop. If the start
+     * is free, every stop is tried as the start and the shortest result is kept.
+     * @param distances the distance between every pair of stops
+     * @param fixedStart if true, the order starts with stop 0
+     * @param fixedEnd if true, the order ends with the last stop
+     * @return the best nearest-neighbour order
+     */
+    private static int[] nearestNeighbour(double[][] distances, boolean fixedStart,
+                                          boolean fixedEnd) {
+        int n = distances.length;
+        int[] best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int lastStart = fixedStart ? 0 : (fixedEnd ? n - 2 : n - 1);
+        for (int first = 0; first <= lastStart; first++) {
+            int[] order = new int[n];
+            boolean[] visited = new boolean[n];
+            order[0] = first;
+            visited[first] = true;
+            if (fixedEnd) {
+                order[n - 1] = n - 1;
+                visited[n - 1] = true;
+            }
+            int open = fixedEnd ? n - 1 : n;
+            for (int pos = 1; pos < open; pos++) {
+                int next = -1;
+                for (int j = 0; j < n; j++) {
+                    if (!visited[j] && (next < 0
+                            || distances[order[pos - 1]][j] < distances[order[pos - 1]][next])) {
+                        next = j;
+                    }
+                }
+                order[pos] = next;
+                visited[next] = true;
+            }
+            double c = cost(distances, order);
+            if (best == null || c < bestCost) {
+                best = order;
+                bestCost = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Improve the given order with 2-opt and Or-opt moves until neither finds a shorter
+     * order or the deadline passes. Only the stops at positions lo to hi may move.
+     * @param distances the distance between every pair of stops
+     * @param order the visiting order to improve
+     * @param lo the first position that may change
+     * @param hi the last position that may change
+     * @param deadline the System.nanoTime() after which no more moves are tried
+     * @spec.modifies order
+     * @spec.effects order is a permutation no longer than before
+     */
+    private static void improve(double[][] distances, int[] order, int lo, int hi, long deadline) {
+        double current = cost(distances, order);
+        int[] candidate = new int[order.length];
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+
+            // 2-opt: walk a segment backwards
+            for (int i = lo; i < hi && System.nanoTime() < deadline; i++) {
+                for (int j = i + 1; j <= hi; j++) {
+                    System.arraycopy(order, 0, candidate, 0, order.length);
+                    for (int a = i, b = j; a < b; a++, b--) {
+                        int t = candidate[a];
+                        candidate[a] = candidate[b];
+                        candidate[b] = t;
+                    }
+                    double c = cost(distances, candidate);
+                    if (c < current) {
+                        System.arraycopy(candidate, 0, order, 0, order.length);
+                        current = c;
+                        improved = true;
+                    }
+                }
+            }
+
+            // Or-opt: move a short segment elsewhere in the order
+            for (int len = 1; len <= MAX_OR_OPT_SEGMENT; len++) {
+                for (int i = lo; i + len - 1 <= hi && System.nanoTime() < deadline; i++) {
+                    for (int to = lo; to + len - 1 <= hi; to++) {
+                        if (to == i) {
+                            continue;
+                        }
+                        moveSegment(order, candidate, i, len, to);
+                        double c = cost(distances, candidate);
+                        if (c < current) {
+                            System.arraycopy(candidate, 0, order, 0, order.length);
+                            current = c;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write into "result" the order made by moving order[from, from + len) so that it starts
+     * at position "to", shifting the stops in between by len places
+     * @param order the original order
+     * @param result the array to write the new order into
+     * @param from the first position of the segment
+     * @param len the length of the segment
+     * @param to the position the segment starts at afterwards
+     * @spec.requires {@code to + len <= order.length} and result is as long as order
+     * @spec.modifies result
+     */
+    private static void moveSegment(int[] order, int[] result, int from, int len, int to) {
+        System.arraycopy(order, 0, result, 0, order.length);
+        if (to < from) {
+            System.arraycopy(order, to, result, to + len, from - to);
+        } else {
+            System.arraycopy(order, from + len, result, from, to - from);
+        }
+        System.arraycopy(order, from, result, to, len);
+    }
+
+    /**
+     * Return the length of the walk visiting the stops in the given order
+     * @param distances the distance between every pair of stops
+     * @param order the visiting order
+     * @return the sum of the distances between consecutive stops
+     */
+    private static double cost(double[][] distances, int[] order) {
+        double total = 0.0;
+        for (int i = 1; i < order.length; i++) {
+            total += distances[order[i - 1]][order[i]];
+        }
+        return total;
+    }
+
+    /**
+     * Plan is a visiting order of stops together with the full walk through them
+     */
+    public static final class Plan<N> {
+
+        /** the stops in visiting order */
+        private final List<N> stops;
+
+        /** the edges of the walk in walking order */
+        private final List<Graph<N, Double>.Edge> path;
+
+        /** the length of the walk */
+        private final double distance;
+
+        /**
+         * @param stops the stops in visiting order
+         * @param path the edges of the walk in walking order
+         * @param distance the length of the walk
+         * @spec.effects Constructs a new Plan
+         */
+        Plan(List<N> stops, List<Graph<N, Double>.Edge> path, double distance) {
+            this.stops = Collections.unmodifiableList(stops);
+            this.path = Collections.unmodifiableList(path);
+            this.distance = distance;
+        }
+
+        /**
+         * Getter method for the stops in visiting order
+         * @return an unmodifiable List of the stops in visiting order
+         */
+        public List<N> getStops() {
+            return this.stops;
+        }
+
+        /**
+         * Getter method for the walk
+         * @return an unmodifiable List of the edges of the walk in walking order
+         */
+        public List<Graph<N, Double>.Edge> getPath() {
+            return this.path;
+        }
+
+        /**
+         * Getter method for the length of the walk
+         * @return the length of the walk
+         */
+        public double getDistance() {
+            return this.distance;
+        }
+    }
+}
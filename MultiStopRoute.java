@@ -0,0 +1,70 @@
+import java.util.*;
+
+/**
+ * MultiStopRoute represents a walk that visits several buildings on campus: the order the
+ * buildings are visited in, the sub-paths of the whole walk and its total distance.
+ */
+public final class MultiStopRoute {
+
+    /** the buildings in visiting order */
+    private final List<Building> stops;
+
+    /** the sub-paths of the walk in walking order */
+    private final List<Graph<Coordinates, Double>.Edge> path;
+
+    /** the length of the walk, in feet */
+    private final double distance;
+
+    // Abstract Function:
+    // Each MultiStopRoute r is a walk of r.distance feet along r.path that passes the
+    // buildings in r.stops in that order.
+    //
+    // Rep Invariant:
+    // stops != null && path != null && distance >= 0
+
+    /**
+     * Constructs a new MultiStopRoute
+     * @param stops the buildings in visiting order
+     * @param path the sub-paths of the walk in walking order
+     * @param distance the length of the walk, in feet
+     * @spec.requires {@code stops != null && path != null && distance >= 0}
+     * @spec.effects Constructs a new MultiStopRoute with the given values
+     */
+    public MultiStopRoute(List<Building> stops, List<Graph<Coordinates, Double>.Edge> path,
+                          double distance) {
+        this.stops = Collections.unmodifiableList(new ArrayList<>(stops));
+        this.path = Collections.unmodifiableList(new ArrayList<>(path));
+        this.distance = distance;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (stops != null && path != null);
+        assert (distance >= 0);
+    }
+
+    /**
+     * Getter method for the buildings in visiting order
+     * @return an unmodifiable List of the buildings in visiting order
+     */
+    public List<Building> getStops() {
+        return this.stops;
+    }
+
+    /**
+     * Getter method for the walk
+     * @return an unmodifiable List of the sub-paths of the walk in walking order
+     */
+    public List<Graph<Coordinates, Double>.Edge> getPath() {
+        return this.path;
+    }
+
+    /**
+     * Getter method for the length of the walk
+     * @return the length of the walk, in feet
+     */
+    public double getDistance() {
+        return this.distance;
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * OffHeapGraph is an immutable map of walking paths whose nodes and edges are stored
+ * outside the Java heap, for networks too large to keep as objects. The coordinates of
+ * every node, the edges leaving every node (laid out as in CompactGraph) and a hash table
+ * from coordinates to node numbers are kept in direct buffers, or in buffers mapped from a
+ * file written by write(), so the heap holds a few buffer objects however large the map
+ * is, and a mapped map is paged in by the operating system as it is searched.
+ *
+ * Searches read the buffers through the accessors and keep their state in a
+ * SearchWorkspace, so they create no object per node or edge.
+ *
+ * A file starts with a header of HEADER_BYTES bytes: MAGIC, VERSION, the node count, the
+ * edge count and the size of the hash table as little-endian ints. The coordinates, the
+ * lengths, the edge offsets, the edge targets and the hash table follow in that order,
+ * each starting at a multiple of 8 bytes. Every part is mapped on its own, so each may be
+ * up to 2 GiB.
+ */
+public final class OffHeapGraph {
+
+    /** the first int of every file */
+    private static final int MAGIC = 0x43504d47;
+
+    /** the version of the file layout */
+    private static final int VERSION = 1;
+
+    /** the size of the file header, in bytes */
+    private static final int HEADER_BYTES = 32;
+
+    /** the value of an empty slot of the hash table */
+    private static final int EMPTY = -1;
+
+    /** the number of nodes */
+    private final int nodeCount;
+
+    /** the number of edges */
+    private final int edgeCount;
+
+    /** the bytes of the coordinates, lengths, offsets, targets and hash table */
+    private final ByteBuffer[] parts;
+
+    /** the x and y coordinates of every node, one after the other */
+    private final DoubleBuffer coordinates;
+
+    /** the length of every edge */
+    private final DoubleBuffer weights;
+
+    /** the edges leaving node v are offsets[v] until offsets[v + 1] */
+    private final IntBuffer offsets;
+
+    /** the node every edge ends at */
+    private final IntBuffer targets;
+
+    /** an open-addressing hash table from coordinates to node numbers */
+    private final IntBuffer index;
+
+    // Abstract Function:
+    // Each OffHeapGraph g represents a graph whose node v lies at
+    // (coordinates[2v], coordinates[2v + 1]) and which has an edge e from v to targets[e]
+    // of length weights[e] for every offsets[v] <= e < offsets[v + 1].
+    //
+    // Rep Invariant:
+    // parts != null && all buffers != null && coordinates holds 2 * nodeCount doubles &&
+    // offsets holds nodeCount + 1 ints with offsets[0] == 0, non-decreasing up to
+    // offsets[nodeCount] == edgeCount && targets and weights hold edgeCount values &&
+    // index holds a power of two larger than nodeCount of ints, each EMPTY or a node number
+
+    /**
+     * @param nodeCount the number of nodes
+     * @param edgeCount the number of edges
+     * @param parts the little-endian bytes of the coordinates of every node, the length of
+     *              every edge, the first edge of every node followed by edgeCount, the
+     *              node every edge ends at, and the hash table from coordinates to node
+     *              numbers
+     * @spec.requires the arguments satisfy the rep invariant
+     * @spec.effects Constructs an OffHeapGraph on the given buffers
+     */
+    private OffHeapGraph(int nodeCount, int edgeCount, ByteBuffer[] parts) {
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.parts = parts;
+        this.coordinates = parts[0].asDoubleBuffer();
+        this.weights = parts[1].asDoubleBuffer();
+        this.offsets = parts[2].asIntBuffer();
+        this.targets = parts[3].asIntBuffer();
+        this.index = parts[4].asIntBuffer();
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (coordinates != null && weights != null && offsets != null);
+        assert (targets != null && index != null);
+        assert (coordinates.capacity() == 2 * nodeCount && offsets.capacity() == nodeCount + 1);
+        assert (targets.capacity() == edgeCount && weights.capacity() == edgeCount);
+        assert (Integer.bitCount(index.capacity()) == 1 && index.capacity() > nodeCount);
+    }
+
+    /**
+     * Return a copy of a map in direct buffers
+     * @param graph the map to copy
+     * @return an OffHeapGraph with the same node numbers, edge numbers and lengths as
+     * "graph"
+     */
+    public static OffHeapGraph copyOf(CompactGraph<Coordinates> graph) {
+        int n = graph.nodeCount();
+        int m = graph.edgeCount();
+        int tableSize = tableSize(n);
+        ByteBuffer[] parts = {allocate((long) n * 2 * Double.BYTES),
+                allocate((long) m * Double.BYTES), allocate((long) (n + 1) * Integer.BYTES),
+                allocate((long) m * Integer.BYTES), allocate((long) tableSize * Integer.BYTES)};
+        DoubleBuffer coordinates = parts[0].asDoubleBuffer();
+        DoubleBuffer weights = parts[1].asDoubleBuffer();
+        IntBuffer offsets = parts[2].asIntBuffer();
+        IntBuffer targets = parts[3].asIntBuffer();
+        IntBuffer index = parts[4].asIntBuffer();
+        for (int i = 0; i < tableSize; i++) {
+            index.put(i, EMPTY);
+        }
+        for (int v = 0; v < n; v++) {
+            Coordinates node = graph.node(v);
+            double x = node.getX() + 0.0;
+            double y = node.getY() + 0.0;
+            coordinates.put(2 * v, x);
+            coordinates.put(2 * v + 1, y);
+            int slot = hash(x, y) & (tableSize - 1);
+            while (index.get(slot) != EMPTY) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            index.put(slot, v);
+            offsets.put(v, graph.firstEdge(v));
+        }
+        offsets.put(n, m);
+        for (int e = 0; e < m; e++) {
+            targets.put(e, graph.target(e));
+            weights.put(e, graph.weight(e));
+        }
+        return new OffHeapGraph(n, m, parts);
+    }
+
+    /**
+     * Write this map to a file that map() can read
+     * @param file the file to write; replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw");
+             FileChannel channel = out.getChannel()) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(edgeCount)
+                    .putInt(index.capacity()).flip();
+            writeFully(channel, header, 0);
+            long position = HEADER_BYTES;
+            for (ByteBuffer part : parts) {
+                position = align(position);
+                writeFully(channel, part.duplicate(), position);
+                position += part.capacity();
+            }
+        }
+    }
+
+    /**
+     * Return the map stored in a file, mapped into memory read-only. The file must not be
+     * changed while the map is in use.
+     * @param file a file written by write()
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if "file" is not a map file or is truncated
+     * @return an OffHeapGraph backed by the pages of "file"
+     */
+    public static OffHeapGraph map(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IllegalArgumentException("Not a map file: " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // keep reading
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalArgumentException("Not a map file of version " + VERSION
+                        + ": " + file);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int tableSize = header.getInt();
+            if (n < 0 || m < 0 || Integer.bitCount(tableSize) != 1 || tableSize <= n) {
+                throw new IllegalArgumentException("Corrupt map file: " + file);
+            }
+            long[] lengths = {(long) n * 2 * Double.BYTES, (long) m * Double.BYTES,
+                    (long) (n + 1) * Integer.BYTES, (long) m * Integer.BYTES,
+                    (long) tableSize * Integer.BYTES};
+            ByteBuffer[] parts = new ByteBuffer[lengths.length];
+            long position = HEADER_BYTES;
+            for (int i = 0; i < parts.length; i++) {
+                position = align(position);
+                if (position + lengths[i] > channel.size()) {
+                    throw new IllegalArgumentException("Truncated map file: " + file);
+                }
+                parts[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, lengths[i])
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                position += lengths[i];
+            }
+            // the mappings stay valid after the channel is closed
+            return new OffHeapGraph(n, m, parts);
+        }
+    }
+
+    /**
+     * Return the number of nodes
+     * @return the number of nodes of this map
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Return the number of edges
+     * @return the number of edges of this map
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Return the x coordinate of a node
+     * @param v the number of a node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return the x coordinate of node "v"
+     */
+    public double x(int v) {
+        return coordinates.get(2 * v);
+    }
+
+    /**
+     * Return the y coordinate of a node
+     * @param v the number of a node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return the y coordinate of node "v"
+     */
+    public double y(int v) {
+        return coordinates.get(2 * v + 1);
+    }
+
+    /**
+     * Return the number of the node at the given coordinates
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the number of the node at (x, y), or -1 if there is none
+     */
+    public int indexOf(double x, double y) {
+        int mask = index.capacity() - 1;
+        for (int slot = hash(x + 0.0, y + 0.0) & mask; ; slot = (slot + 1) & mask) {
+            int v = index.get(slot);
+            if (v == EMPTY || (x(v) == x && y(v) == y)) {
+                return v;
+            }
+        }
+    }
+
+    /**
+     * Return the first edge leaving a node
+     * @param v the number of a node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return the number of the first edge leaving "v"
+     */
+    public int firstEdge(int v) {
+        return offsets.get(v);
+    }
+
+    /**
+     * Return one past the last edge leaving a node
+     * @param v the number of a node
+     * @spec.requires {@code 0 <= v < nodeCount()}
+     * @return the number after the last edge leaving "v"
+     */
+    public int endEdge(int v) {
+        return offsets.get(v + 1);
+    }
+
+    /**
+     * Return the node an edge ends at
+     * @param e the number of an edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return the number of the destination of "e"
+     */
+    public int target(int e) {
+        return targets.get(e);
+    }
+
+    /**
+     * Return the length of an edge
+     * @param e the number of an edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return the length of "e"
+     */
+    public double weight(int e) {
+        return weights.get(e);
+    }
+
+    /**
+     * Find a shortest path between two nodes with Dijkstra's algorithm. The distances of
+     * the search are left in "workspace".
+     * @param source the number of the node the path starts at
+     * @param target the number of the node the path ends at
+     * @param workspace the search state to use, with room for nodeCount() nodes
+     * @spec.requires {@code 0 <= source, target < nodeCount()}
+     * @spec.modifies workspace
+     * @return the numbers of the edges of the path in walking order, or null if "target"
+     * cannot be reached
+     */
+    public int[] shortestPath(int source, int target, SearchWorkspace workspace) {
+        if (workspace.capacity() < nodeCount) {
+            throw new IllegalArgumentException("workspace is too small for this map");
+        }
+        workspace.reset();
+        workspace.offer(source, 0.0, -1);
+        while (!workspace.isHeapEmpty()) {
+            int v = workspace.pollMin();
+            if (v == target) {
+                break;
+            }
+            double d = workspace.getDistance(v);
+            for (int e = offsets.get(v), end = offsets.get(v + 1); e < end; e++) {
+                int w = targets.get(e);
+                if (!workspace.isSettled(w)) {
+                    workspace.offer(w, d + weights.get(e), e);
+                }
+            }
+        }
+        if (!workspace.isSettled(target)) {
+            return null;
+        }
+        int length = 0;
+        for (int v = target; v != source; v = sourceOf(workspace.getParentEdge(v))) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target; v != source; v = sourceOf(workspace.getParentEdge(v))) {
+            path[--length] = workspace.getParentEdge(v);
+        }
+        return path;
+    }
+
+    /**
+     * Return the node an edge starts at
+     * @param e the number of an edge
+     * @spec.requires {@code 0 <= e < edgeCount()}
+     * @return the number of the node whose edges include "e"
+     */
+    public int sourceOf(int e) {
+        // the last node whose first edge is at most e
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets.get(mid) <= e) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return a direct buffer of the given size in little-endian order
+     * @param bytes the size of the buffer
+     * @return a new zeroed direct ByteBuffer
+     */
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A part of the map is larger than 2 GiB");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write all of a buffer at a position of a channel
+     * @param channel the channel to write to
+     * @param buffer the bytes to write
+     * @param position where to write them
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Round a file position up to a multiple of 8
+     * @param position a position
+     * @return the smallest multiple of 8 that is at least "position"
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Return the size of the hash table for a number of nodes
+     * @param n the number of nodes
+     * @return the smallest power of two that is at least 2n, and at least 1
+     */
+    private static int tableSize(int n) {
+        int size = Integer.highestOneBit(Math.max(2 * n, 1));
+        return size < 2 * n ? size << 1 : size;
+    }
+
+    /**
+     * Return the hash of a point
+     * @param x the x coordinate, not -0.0
+     * @param y the y coordinate, not -0.0
+     * @return a well-mixed hash of (x, y)
+     */
+    private static int hash(double x, double y) {
+        long h = Double.doubleToLongBits(x) * 0x9E3779B97F4A7C15L
+                ^ Double.doubleToLongBits(y) * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * OffHeapGraphBenchmark compares the heap a large walking map takes as a CompactGraph and
+ * as an OffHeapGraph mapped from a file, and checks that both give the same shortest
+ * distances. The map is a synthetic grid of side x side nodes with two-way streets; it is
+ * built as a CompactGraph, written to a temporary map file, and mapped back after the
+ * CompactGraph has been dropped. Random searches are then timed on both.
+ *
+ * Usage: java OffHeapGraphBenchmark [side] [searches]
+ */
+public class OffHeapGraphBenchmark {
+    // No abstract function because it only has static methods
+
+    /** the distance between neighboring nodes of the grid, in feet */
+    private static final double SPACING = 50.0;
+
+    /**
+     * Main method. Runs the benchmark and prints the results to the console
+     * @param args optionally the side of the grid and the number of searches
+     * @throws IOException if the temporary map file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int side = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int searches = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long baseline = usedHeap();
+
+        CompactGraph<Coordinates> compact = grid(side);
+        long compactHeap = usedHeap() - baseline;
+        File file = File.createTempFile("campus-map", ".graph");
+        file.deleteOnExit();
+        OffHeapGraph.copyOf(compact).write(file);
+
+        Random random = new Random(1);
+        int[] sources = new int[searches];
+        int[] targets = new int[searches];
+        for (int i = 0; i < searches; i++) {
+            sources[i] = random.nextInt(compact.nodeCount());
+            targets[i] = random.nextInt(compact.nodeCount());
+        }
+        double[] expected = new double[searches];
+        SearchWorkspacePool pool = new SearchWorkspacePool(compact.nodeCount());
+        long begin = System.nanoTime();
+        for (int i = 0; i < searches; i++) {
+            try (ShortestPathTree<Coordinates> tree = ShortestPathTree.from(compact, pool,
+                    compact.node(sources[i]))) {
+                tree.searchTo(compact.node(targets[i]));
+                expected[i] = tree.getDistance(compact.node(targets[i]));
+            }
+        }
+        long compactNanos = System.nanoTime() - begin;
+        int nodes = compact.nodeCount();
+        int edges = compact.edgeCount();
+        compact = null;
+
+        long offHeapBaseline = usedHeap();
+        OffHeapGraph graph = OffHeapGraph.map(file);
+        long offHeapHeap = usedHeap() - offHeapBaseline;
+        SearchWorkspace workspace = new SearchWorkspace(graph.nodeCount());
+        int mismatches = 0;
+        begin = System.nanoTime();
+        for (int i = 0; i < searches; i++) {
+            int[] path = graph.shortestPath(sources[i], targets[i], workspace);
+            double distance = 0.0;
+            for (int e : path) {
+                distance += graph.weight(e);
+            }
+            if (Math.abs(distance - expected[i]) > 1e-6) {
+                mismatches++;
+            }
+        }
+        long offHeapNanos = System.nanoTime() - begin;
+
+        System.out.printf("%d nodes, %d edges, map file of %.1f MB%n", nodes, edges,
+                file.length() / 1e6);
+        System.out.printf("CompactGraph:  %.1f MB of heap, %.2f ms per search%n",
+                compactHeap / 1e6, compactNanos / 1e6 / searches);
+        System.out.printf("OffHeapGraph:  %.1f MB of heap, %.2f ms per search%n",
+                offHeapHeap / 1e6, offHeapNanos / 1e6 / searches);
+        System.out.println(mismatches == 0 ? "all distances agree"
+                : mismatches + " distances differ");
+        if (graph.indexOf(0.0, 0.0) != 0) {
+            System.out.println("node lookup failed");
+        }
+    }
+
+    /**
+     * Return a grid of two-way streets
+     * @param side the number of nodes along each side
+     * @return a CompactGraph of side * side nodes
+     */
+    private static CompactGraph<Coordinates> grid(int side) {
+        GraphBuilder<Coordinates> builder = new GraphBuilder<>(side * side, 4 * side * side);
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                builder.addNode(new Coordinates(j * SPACING, i * SPACING));
+            }
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                int v = i * side + j;
+                if (j + 1 < side) {
+                    builder.addEdge(v, v + 1, SPACING);
+                    builder.addEdge(v + 1, v, SPACING);
+                }
+                if (i + 1 < side) {
+                    builder.addEdge(v, v + side, SPACING);
+                    builder.addEdge(v + side, v, SPACING);
+                }
+            }
+        }
+        return builder.freeze();
+    }
+
+    /**
+     * Return the heap in use after collecting garbage
+     * @return the number of bytes of heap in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
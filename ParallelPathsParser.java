@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Parser utility to load large Campus Paths datasets on several cores. The file is mapped
+ * into memory and split at line boundaries into chunks, which are parsed in parallel on a
+ * ForkJoinPool into per-chunk buffers of nodes and edges. The chunks are then merged in
+ * file order, so nodes are numbered by their first appearance in the file exactly as a
+ * line-by-line parse would number them, whatever the number of threads.
+ *
+ * The file has the same format as for CampusPathsParser: a header line, then one path per
+ * line made of two "x,y" coordinates and a length separated by tabs. Quotation marks are
+ * ignored, and lines that are empty or start with "#" are skipped.
+ */
+public class ParallelPathsParser {
+    // No abstract function because it only has static methods
+
+    /** chunks are at least this many bytes, so small files are parsed on one thread */
+    private static final int MIN_CHUNK_BYTES = 1 << 18;
+
+    /** the number of chunks per thread of the pool, to even out uneven chunks */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Reads the CampusPaths dataset on the threads of the given pool
+     *
+     * @spec.requires filename is a valid file path
+     * @param filename the file that will be read
+     * @param pool the pool the chunks are parsed on
+     * @throws IllegalArgumentException if a line is malformed or the file is larger than
+     * 2 GB
+     * @throws UncheckedIOException if the file cannot be read
+     * @return a CompactGraph with every path in the file
+     */
+    public static CompactGraph<Coordinates> parseData(String filename, ForkJoinPool pool) {
+        Chunk[] chunks;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("file is too large: " + filename);
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            chunks = split(file, (int) size, pool.getParallelism());
+            pool.submit(() -> IntStream.range(0, chunks.length).parallel()
+                    .forEach(i -> chunks[i].parse(file))).join();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int edgeCount = 0;
+        int localNodeCount = 0;
+        for (Chunk chunk : chunks) {
+            edgeCount += chunk.edgeCount;
+            localNodeCount += chunk.nodes.size();
+        }
+        GraphBuilder<Coordinates> builder = new GraphBuilder<>(localNodeCount, edgeCount);
+        for (Chunk chunk : chunks) {
+            int[] ids = new int[chunk.nodes.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = builder.addNode(chunk.nodes.get(i));
+            }
+            for (int k = 0; k < chunk.edgeCount; k++) {
+                builder.addEdge(ids[chunk.starts[k]], ids[chunk.ends[k]], chunk.lengths[k]);
+            }
+        }
+        return builder.freeze();
+    }
+
+    /**
+     * Split the lines after the header of a file into chunks that end at line boundaries
+     * @param file the contents of the file
+     * @param size the number of bytes in the file
+     * @param threads the number of threads that will parse the chunks
+     * @return the chunks in file order; together they cover every line after the first
+     */
+    private static Chunk[] split(MappedByteBuffer file, int size, int threads) {
+        int first = nextLine(file, 0, size);
+        long body = size - first;
+        int count = (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD,
+                body / MIN_CHUNK_BYTES));
+        List<Chunk> chunks = new ArrayList<>(count);
+        int start = first;
+        for (int i = 1; i <= count && start < size; i++) {
+            int end = i == count ? size : nextLine(file, (int) (first + body * i / count), size);
+            if (end > start) {
+                chunks.add(new Chunk(start, end));
+                start = end;
+            }
+        }
+        return chunks.toArray(new Chunk[0]);
+    }
+
+    /**
+     * Return the start of the line after the one containing the given position
+     * @param file the contents of the file
+     * @param position a position in the file
+     * @param size the number of bytes in the file
+     * @return the position after the first newline at or after "position", or "size" if
+     * there is none
+     */
+    private static int nextLine(MappedByteBuffer file, int position, int size) {
+        while (position < size && file.get(position) != '\n') {
+            position++;
+        }
+        return Math.min(position + 1, size);
+    }
+
+    /**
+     * Chunk is a run of whole lines of the file and the paths parsed from them. The nodes
+     * of a chunk are numbered locally, in order of first appearance in the chunk.
+     */
+    private static final class Chunk {
+
+        /** the position of the first byte of the chunk in the file */
+        private final int start;
+
+        /** one past the position of the last byte of the chunk */
+        private final int end;
+
+        /** the nodes of the chunk in order of first appearance */
+        private final List<Coordinates> nodes = new ArrayList<>();
+
+        /** the local number of every node of the chunk */
+        private final Map<Coordinates, Integer> ids = new HashMap<>();
+
+        /** the local number of the start of every path */
+        private int[] starts = new int[64];
+
+        /** the local number of the end of every path */
+        private int[] ends = new int[64];
+
+        /** the length of every path */
+        private double[] lengths = new double[64];
+
+        /** the number of paths parsed */
+        private int edgeCount;
+
+        // Abstract Function:
+        // Each Chunk c stands for the lines in bytes [start, end) of the file. Once parsed,
+        // its k-th path runs from nodes.get(starts[k]) to nodes.get(ends[k]) with length
+        // lengths[k], for 0 <= k < edgeCount, in file order.
+        //
+        // Rep Invariant:
+        // 0 <= start <= end && ids.size() == nodes.size() &&
+        // starts, ends and lengths have the same length >= edgeCount
+
+        /**
+         * @param start the position of the first byte of the chunk
+         * @param end one past the position of the last byte of the chunk
+         * @spec.effects Constructs an unparsed Chunk
+         */
+        Chunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parse every line of this chunk
+         * @param file the contents of the file
+         * @spec.modifies this
+         * @throws IllegalArgumentException if a line is malformed
+         */
+        void parse(MappedByteBuffer file) {
+            byte[] bytes = new byte[end - start];
+            file.duplicate().position(start).get(bytes);
+            int lineStart = 0;
+            while (lineStart < bytes.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && bytes[contentEnd - 1] == '\r') {
+                    contentEnd--;
+                }
+                if (contentEnd > lineStart && bytes[lineStart] != '#') {
+                    parseLine(bytes, lineStart, contentEnd);
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        /**
+         * Parse one line into a path
+         * @param bytes the bytes of the chunk
+         * @param from the position of the first byte of the line
+         * @param to one past the position of the last byte of the line
+         * @spec.modifies this
+         * @throws IllegalArgumentException if the line is malformed
+         */
+        private void parseLine(byte[] bytes, int from, int to) {
+            int firstTab = -1;
+            int secondTab = -1;
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == '\t') {
+                    if (firstTab < 0) {
+                        firstTab = i;
+                    } else if (secondTab < 0) {
+                        secondTab = i;
+                    } else {
+                        secondTab = -1;
+                        break;
+                    }
+                }
+            }
+            if (secondTab < 0) {
+                throw new IllegalArgumentException("Line should contain exactly two tab: "
+                        + new String(bytes, from, to - from, StandardCharsets.UTF_8));
+            }
+            try {
+                int location1 = node(parseCoordinates(bytes, from, firstTab));
+                int location2 = node(parseCoordinates(bytes, firstTab + 1, secondTab));
+                double distance = Double.parseDouble(text(bytes, secondTab + 1, to));
+                if (edgeCount == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * edgeCount);
+                    ends = Arrays.copyOf(ends, 2 * edgeCount);
+                    lengths = Arrays.copyOf(lengths, 2 * edgeCount);
+                }
+                starts[edgeCount] = location1;
+                ends[edgeCount] = location2;
+                lengths[edgeCount] = distance;
+                edgeCount++;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("CSV Data Type Mismatch: "
+                        + new String(bytes, from, to - from, StandardCharsets.UTF_8));
+            }
+        }
+
+        /**
+         * Return the local number of the given node, numbering it if it is new
+         * @param location the node
+         * @spec.modifies this
+         * @return the local number of "location"
+         */
+        private int node(Coordinates location) {
+            Integer id = ids.get(location);
+            if (id == null) {
+                id = nodes.size();
+                ids.put(location, id);
+                nodes.add(location);
+            }
+            return id;
+        }
+
+        /**
+         * Parse a field of the form "x,y"
+         * @param bytes the bytes of the chunk
+         * @param from the position of the first byte of the field
+         * @param to one past the position of the last byte of the field
+         * @return the Coordinates in the field
+         */
+        private static Coordinates parseCoordinates(byte[] bytes, int from, int to) {
+            int comma = from;
+            while (comma < to && bytes[comma] != ',') {
+                comma++;
+            }
+            return new Coordinates(Double.parseDouble(text(bytes, from, comma)),
+                    Double.parseDouble(text(bytes, comma + 1, to)));
+        }
+
+        /**
+         * Return part of a line as text, without quotation marks
+         * @param bytes the bytes of the chunk
+         * @param from the position of the first byte
+         * @param to one past the position of the last byte
+         * @return the characters in bytes[from, to) other than '"'
+         */
+        private static String text(byte[] bytes, int from, int to) {
+            boolean quoted = false;
+            for (int i = from; i < to && !quoted; i++) {
+                quoted = bytes[i] == '"';
+            }
+            if (!quoted) {
+                return new String(bytes, from, Math.max(to - from, 0),
+                        StandardCharsets.ISO_8859_1);
+            }
+            StringBuilder s = new StringBuilder(Math.max(to - from, 0));
+            for (int i = from; i < to; i++) {
+                if (bytes[i] != '"') {
+                    s.append((char) bytes[i]);
+                }
+            }
+            return s.toString();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PathLoadBenchmark measures how fast paths files are loaded. It times the line-by-line
+ * CampusPathsParser.parseData and ParallelPathsParser on 1, 2, 4, ... up to all available
+ * cores, checks that every core count builds exactly the same graph, and prints the
+ * throughput of each in MB/s. Without a file argument it writes a synthetic street grid
+ * in the campus paths format to a temporary file and loads that.
+ *
+ * Usage: java PathLoadBenchmark [paths file | number of lines]
+ */
+public class PathLoadBenchmark {
+    // No abstract function because it only has static methods
+
+    /** the number of timed loads per configuration; the fastest is reported */
+    private static final int REPEATS = 3;
+
+    /**
+     * Main method. Runs the benchmark and prints the results to the console
+     * @param args optionally a paths file to load, or the number of lines of the synthetic
+     *             file
+     * @throws IOException if the file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        Path file;
+        boolean temporary = args.length == 0 || args[0].matches("\\d+");
+        if (temporary) {
+            int lines = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+            file = Files.createTempFile("paths", ".tsv");
+            writeGrid(file, lines, new Random(42));
+        } else {
+            file = Paths.get(args[0]);
+        }
+        try {
+            double megabytes = Files.size(file) / (1024.0 * 1024.0);
+            System.out.printf("file: %s (%.1f MB)%n", file, megabytes);
+
+            long sequential = Long.MAX_VALUE;
+            for (int r = 0; r < REPEATS; r++) {
+                long start = System.nanoTime();
+                CampusPathsParser.parseData(file.toString());
+                sequential = Math.min(sequential, System.nanoTime() - start);
+            }
+            System.out.printf("line by line:  %6d ms %7.1f MB/s%n", sequential / 1_000_000,
+                    megabytes / (sequential / 1e9));
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            SortedSet<Integer> coreCounts = new TreeSet<>();
+            for (int threads = 1; threads < cores; threads *= 2) {
+                coreCounts.add(threads);
+            }
+            coreCounts.add(cores);
+            CompactGraph<Coordinates> expected = null;
+            for (int threads : coreCounts) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long best = Long.MAX_VALUE;
+                for (int r = 0; r < REPEATS; r++) {
+                    long start = System.nanoTime();
+                    CompactGraph<Coordinates> graph = ParallelPathsParser.parseData(
+                            file.toString(), pool);
+                    best = Math.min(best, System.nanoTime() - start);
+                    if (expected == null) {
+                        expected = graph;
+                        System.out.println("nodes: " + graph.nodeCount() + ", edges: "
+                                + graph.edgeCount());
+                    } else if (!sameGraph(expected, graph)) {
+                        throw new AssertionError("loads on " + threads + " cores differ");
+                    }
+                }
+                pool.shutdown();
+                System.out.printf("chunked %2d core%s %6d ms %7.1f MB/s%n", threads,
+                        threads == 1 ? ": " : "s:", best / 1_000_000, megabytes / (best / 1e9));
+            }
+        } finally {
+            if (temporary) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Write a two-way street grid with randomly placed intersections in the paths format
+     * @param file the file to write
+     * @param lines about the number of paths to write
+     * @param random the source of the positions
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeGrid(Path file, int lines, Random random) throws IOException {
+        int side = (int) Math.ceil(Math.sqrt(lines / 4.0)) + 1;
+        double[] x = new double[side * side];
+        double[] y = new double[side * side];
+        for (int v = 0; v < x.length; v++) {
+            x[v] = (v % side) * 100 + random.nextDouble() * 20;
+            y[v] = (v / side) * 100 + random.nextDouble() * 20;
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("origin\tdestination\tdistance\n");
+            for (int v = 0; v < x.length; v++) {
+                if ((v + 1) % side != 0) {
+                    writePath(out, x, y, v, v + 1);
+                    writePath(out, x, y, v + 1, v);
+                }
+                if (v + side < x.length) {
+                    writePath(out, x, y, v, v + side);
+                    writePath(out, x, y, v + side, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write one path line
+     * @param out where to write
+     * @param x the x coordinate of every node
+     * @param y the y coordinate of every node
+     * @param a the start of the path
+     * @param b the end of the path
+     * @throws IOException if the line cannot be written
+     */
+    private static void writePath(BufferedWriter out, double[] x, double[] y, int a, int b)
+            throws IOException {
+        out.write(x[a] + "," + y[a] + "\t" + x[b] + "," + y[b] + "\t"
+                + Math.hypot(x[a] - x[b], y[a] - y[b]) + "\n");
+    }
+
+    /**
+     * Checks if two graphs have the same nodes in the same order and the same edges
+     * @param a one graph
+     * @param b the other graph
+     * @return true if "a" and "b" are identical
+     */
+    private static boolean sameGraph(CompactGraph<Coordinates> a, CompactGraph<Coordinates> b) {
+        if (a.nodeCount() != b.nodeCount() || a.edgeCount() != b.edgeCount()) {
+            return false;
+        }
+        for (int v = 0; v < a.nodeCount(); v++) {
+            if (!a.node(v).equals(b.node(v)) || a.firstEdge(v) != b.firstEdge(v)) {
+                return false;
+            }
+        }
+        for (int e = 0; e < a.edgeCount(); e++) {
+            if (a.target(e) != b.target(e) || a.weight(e) != b.weight(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.*;
+
+/**
+ * PolylineSimplifier drops the points of a path that are too close to a straight line to
+ * matter at a given scale, using the Douglas-Peucker algorithm. A simplified path is made
+ * of edges between the points that are kept, each labeled with the total length of the
+ * edges it replaces, so the length of the path does not change.
+ */
+public class PolylineSimplifier {
+    // No abstract function because it only has static methods
+
+    /**
+     * Return the positions of the points of a polyline that are kept when it is simplified
+     * with the given tolerance. The first and last points are always kept, and every
+     * dropped point is within "tolerance" of the segment between the kept points around it.
+     * @param points the points of the polyline
+     * @param tolerance the largest distance a dropped point may be from the simplified line
+     * @spec.requires {@code points != null && tolerance >= 0}
+     * @return the positions in "points" of the kept points, in increasing order
+     */
+    public static int[] simplify(List<Coordinates> points, double tolerance) {
+        int n = points.size();
+        if (n <= 2) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        // ranges still to simplify, as pairs of positions of kept points
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[] {0, n - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int first = range[0];
+            int last = range[1];
+            double farthest = -1;
+            int split = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = distanceToSegment(points.get(i), points.get(first), points.get(last));
+                if (d > farthest) {
+                    farthest = d;
+                    split = i;
+                }
+            }
+            if (split >= 0 && farthest > tolerance) {
+                keep[split] = true;
+                kept++;
+                ranges.push(new int[] {first, split});
+                ranges.push(new int[] {split, last});
+            }
+        }
+        int[] result = new int[kept];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return a simplified version of a connected path. Every edge of the result joins two
+     * kept points and is labeled with the sum of the labels of the edges between them.
+     * @param path the edges of the path in walking order
+     * @param tolerance the largest distance a dropped point may be from the simplified path
+     * @param edgeFactory the Graph the edges of the result are made for
+     * @spec.requires {@code tolerance >= 0} and the destination of every edge of "path" is
+     * the start of the next one
+     * @return a new List of edges from the start to the end of "path" whose labels add up to
+     * the same total
+     */
+    public static List<Graph<Coordinates, Double>.Edge> simplify(
+            List<Graph<Coordinates, Double>.Edge> path, double tolerance,
+            Graph<Coordinates, Double> edgeFactory) {
+        if (path.size() <= 1) {
+            return new ArrayList<>(path);
+        }
+        List<Coordinates> points = new ArrayList<>(path.size() + 1);
+        points.add(path.get(0).getStart());
+        for (Graph<Coordinates, Double>.Edge e : path) {
+            points.add(e.getDestination());
+        }
+        int[] kept = simplify(points, tolerance);
+        List<Graph<Coordinates, Double>.Edge> result = new ArrayList<>(kept.length - 1);
+        for (int k = 1; k < kept.length; k++) {
+            double length = 0.0;
+            for (int i = kept[k - 1]; i < kept[k]; i++) {
+                length += path.get(i).getLabel();
+            }
+            result.add(edgeFactory.new Edge(points.get(kept[k - 1]), points.get(kept[k]), length));
+        }
+        return result;
+    }
+
+    /**
+     * Return the distance from a point to a line segment
+     * @param p the point
+     * @param a one end of the segment
+     * @param b the other end of the segment
+     * @return the smallest distance between "p" and a point of the segment from "a" to "b"
+     */
+    private static double distanceToSegment(Coordinates p, Coordinates a, Coordinates b) {
+        double dx = b.getX() - a.getX();
+        double dy = b.getY() - a.getY();
+        double squaredLength = dx * dx + dy * dy;
+        double t = 0.0;
+        if (squaredLength > 0) {
+            t = ((p.getX() - a.getX()) * dx + (p.getY() - a.getY()) * dy) / squaredLength;
+            t = Math.max(0.0, Math.min(1.0, t));
+        }
+        return Math.hypot(p.getX() - (a.getX() + t * dx), p.getY() - (a.getY() + t * dy));
+    }
+}
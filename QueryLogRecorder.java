@@ -0,0 +1,334 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryLogRecorder writes a log of the route queries a server answers, so that its load
+ * can be replayed later with QueryLogReplay. Recording only puts the query on a bounded
+ * queue, so it never blocks the request thread; if the queue is full the query is dropped
+ * and counted. A background thread writes the queue through a buffered writer, flushing
+ * whenever the queue runs empty, and starts a new file whenever the current one grows past
+ * a size limit, deleting the oldest files beyond a count limit.
+ *
+ * Every line of a log is a query: the time it arrived in milliseconds since the epoch,
+ * the start, the end, the tolerance, the time it took to answer in microseconds, its
+ * outcome and the id of the map, separated by tabs. Log files are named "queries-"
+ * followed by the time they were started, so sorting their names sorts them in time.
+ *
+ * The recorder is configured with system properties:
+ * campusmap.querylog.dir, the directory to write logs to (recording is off if unset);
+ * campusmap.querylog.maxFileBytes, the size a file may grow to (default 64 MiB); and
+ * campusmap.querylog.maxFiles, the number of files kept (default 10).
+ */
+public final class QueryLogRecorder implements Closeable {
+
+    /** the system property naming the directory logs are written to */
+    public static final String DIRECTORY_PROPERTY = "campusmap.querylog.dir";
+
+    /** the system property giving the size a log file may grow to, in bytes */
+    public static final String MAX_FILE_BYTES_PROPERTY = "campusmap.querylog.maxFileBytes";
+
+    /** the system property giving the number of log files kept */
+    public static final String MAX_FILES_PROPERTY = "campusmap.querylog.maxFiles";
+
+    /** the prefix of the name of every log file */
+    public static final String FILE_PREFIX = "queries-";
+
+    /** the suffix of the name of every log file */
+    public static final String FILE_SUFFIX = ".tsv";
+
+    /** the size a log file may grow to when MAX_FILE_BYTES_PROPERTY is not set */
+    private static final long DEFAULT_MAX_FILE_BYTES = 64L << 20;
+
+    /** the number of log files kept when MAX_FILES_PROPERTY is not set */
+    private static final int DEFAULT_MAX_FILES = 10;
+
+    /** the largest number of queries waiting to be written */
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    /** the size of the write buffer, in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** the directory logs are written to */
+    private final File directory;
+
+    /** the size a log file may grow to, in bytes */
+    private final long maxFileBytes;
+
+    /** the number of log files kept */
+    private final int maxFiles;
+
+    /** the queries waiting to be written */
+    private final BlockingQueue<Query> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    /** the thread writing the queue to the log */
+    private final Thread writer;
+
+    /** the number of queries dropped because the queue was full */
+    private final LongAdder dropped = new LongAdder();
+
+    /** whether close has been called */
+    private volatile boolean closed;
+
+    // Abstract Function:
+    // Each QueryLogRecorder r has written the queries recorded so far, except those still
+    // in r.queue and r.dropped.sum() dropped ones, to the files "queries-*.tsv" in
+    // r.directory, keeping at most r.maxFiles files of about r.maxFileBytes bytes.
+    //
+    // Rep Invariant:
+    // directory != null && queue != null && writer != null &&
+    // maxFileBytes > 0 && maxFiles > 0
+
+    /**
+     * @param directory the directory to write logs to; created if it does not exist
+     * @param maxFileBytes the size a log file may grow to, in bytes
+     * @param maxFiles the number of log files kept
+     * @spec.requires {@code maxFileBytes > 0 && maxFiles > 0}
+     * @throws UncheckedIOException if "directory" cannot be created
+     * @spec.effects Constructs a QueryLogRecorder and starts its writer thread
+     */
+    public QueryLogRecorder(File directory, long maxFileBytes, int maxFiles) {
+        if (maxFileBytes <= 0 || maxFiles <= 0) {
+            throw new IllegalArgumentException("maxFileBytes and maxFiles should be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Cannot create " + directory));
+        }
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.writer = new Thread(this::writeLoop, "query-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (directory != null && queue != null && writer != null);
+        assert (maxFileBytes > 0 && maxFiles > 0);
+    }
+
+    /**
+     * Return a recorder configured by the system properties, if recording is turned on
+     * @return a new QueryLogRecorder, or null if DIRECTORY_PROPERTY is not set
+     */
+    public static @Nullable QueryLogRecorder fromSystemProperties() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        return new QueryLogRecorder(new File(directory),
+                Long.getLong(MAX_FILE_BYTES_PROPERTY, DEFAULT_MAX_FILE_BYTES),
+                Integer.getInteger(MAX_FILES_PROPERTY, DEFAULT_MAX_FILES));
+    }
+
+    /**
+     * Record a query without waiting for it to be written
+     * @param timeMillis when the query arrived, in milliseconds since the epoch
+     * @param map the id of the map asked for
+     * @param start the start building asked for
+     * @param end the end building asked for
+     * @param tolerance the tolerance asked for
+     * @param latencyNanos how long the query took to answer, in nanoseconds
+     * @param outcome what the answer was, such as "ok"
+     */
+    public void record(long timeMillis, String map, String start, String end, double tolerance,
+                       long latencyNanos, String outcome) {
+        if (closed || !queue.offer(new Query(timeMillis, map, start, end, tolerance,
+                latencyNanos, outcome))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Return the number of queries that were dropped because they arrived faster than
+     * they could be written
+     * @return the number of dropped queries
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Write every recorded query and stop the writer thread
+     * @spec.modifies this
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write queries from the queue until the recorder is closed and the queue is empty
+     */
+    private void writeLoop() {
+        List<Query> batch = new ArrayList<>();
+        StringBuilder line = new StringBuilder(128);
+        Writer out = null;
+        long written = 0;
+        try {
+            while (true) {
+                Query first;
+                try {
+                    first = closed ? queue.poll() : queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    first = queue.poll();
+                }
+                if (first == null) {
+                    if (closed) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                for (Query query : batch) {
+                    if (out == null || written >= maxFileBytes) {
+                        if (out != null) {
+                            out.close();
+                        }
+                        out = openNext();
+                        written = 0;
+                    }
+                    line.setLength(0);
+                    query.appendTo(line);
+                    out.write(line.toString());
+                    // the names are nearly always ASCII, so count characters as bytes
+                    written += line.length();
+                }
+                batch.clear();
+                if (queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            closed = true;
+            System.err.println("Query log stopped: " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    System.err.println("Query log not closed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a new log file, deleting the oldest ones so that at most maxFiles are kept
+     * @throws IOException if the file cannot be created
+     * @return a buffered writer to the new file
+     */
+    private Writer openNext() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX)
+                && name.endsWith(FILE_SUFFIX));
+        if (files != null && files.length >= maxFiles) {
+            Arrays.sort(files);
+            for (int i = 0; i <= files.length - maxFiles; i++) {
+                if (!files[i].delete()) {
+                    System.err.println("Query log cannot delete " + files[i]);
+                }
+            }
+        }
+        long now = System.currentTimeMillis();
+        File file = new File(directory, String.format("%s%013d%s", FILE_PREFIX, now, FILE_SUFFIX));
+        for (int i = 1; file.exists(); i++) {
+            file = new File(directory, String.format("%s%013d-%d%s", FILE_PREFIX, now, i,
+                    FILE_SUFFIX));
+        }
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Query is one recorded route query
+     */
+    private static final class Query {
+
+        /** when the query arrived, in milliseconds since the epoch */
+        final long timeMillis;
+
+        /** the id of the map asked for */
+        final String map;
+
+        /** the start building asked for */
+        final String start;
+
+        /** the end building asked for */
+        final String end;
+
+        /** the tolerance asked for */
+        final double tolerance;
+
+        /** how long the query took to answer, in nanoseconds */
+        final long latencyNanos;
+
+        /** what the answer was */
+        final String outcome;
+
+        /**
+         * @param timeMillis when the query arrived
+         * @param map the id of the map asked for
+         * @param start the start building asked for
+         * @param end the end building asked for
+         * @param tolerance the tolerance asked for
+         * @param latencyNanos how long the query took to answer
+         * @param outcome what the answer was
+         * @spec.effects Constructs a Query with the given fields
+         */
+        Query(long timeMillis, String map, String start, String end, double tolerance,
+              long latencyNanos, String outcome) {
+            this.timeMillis = timeMillis;
+            this.map = map;
+            this.start = start;
+            this.end = end;
+            this.tolerance = tolerance;
+            this.latencyNanos = latencyNanos;
+            this.outcome = outcome;
+        }
+
+        /**
+         * Append this query as a line of a log
+         * @param s where to append
+         * @spec.modifies s
+         */
+        void appendTo(StringBuilder s) {
+            s.append(timeMillis).append('\t');
+            appendField(s, start);
+            s.append('\t');
+            appendField(s, end);
+            s.append('\t').append(tolerance).append('\t')
+                    .append(TimeUnit.NANOSECONDS.toMicros(latencyNanos)).append('\t')
+                    .append(outcome).append('\t');
+            appendField(s, map);
+            s.append('\n');
+        }
+
+        /**
+         * Append a name with its tabs and line breaks replaced by spaces
+         * @param s where to append
+         * @param value the name
+         * @spec.modifies s
+         */
+        private static void appendField(StringBuilder s, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                s.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+        }
+    }
+}
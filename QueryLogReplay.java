@@ -0,0 +1,233 @@
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * QueryLogReplay sends the route queries of logs written by QueryLogRecorder to a server
+ * again, with the same order and spacing, optionally sped up or slowed down. Unless a URL
+ * is given, it starts CampusPathsApplication in this JVM and replays against it, so that a
+ * production load can be reproduced on one machine without a network.
+ *
+ * Every query is sent when it is due, whether or not earlier ones have been answered, so
+ * a slow server cannot slow the load down. Two latency histograms are reported: the time
+ * from sending a query to its answer, and the time from when it was due to its answer,
+ * which also counts the time it waited for a free sending thread.
+ *
+ * Usage: java QueryLogReplay log-file-or-directory... [--rate multiplier] [--threads n]
+ *        [--port n | --url base-url]
+ */
+public class QueryLogReplay {
+    // No abstract function because it only has static methods
+
+    /** the port the embedded application listens on when --port is not given */
+    private static final int DEFAULT_PORT = 8080;
+
+    /** the number of threads sending queries when --threads is not given */
+    private static final int DEFAULT_THREADS = 64;
+
+    /** how long to wait for a connection or an answer, in milliseconds */
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Main method. Replays the logs and prints a report to the console
+     * @param args the log files or directories of log files, then the options
+     * @throws IOException if a log cannot be read
+     * @throws InterruptedException if interrupted while waiting for the last answers
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<File> logs = new ArrayList<>();
+        double rate = 1.0;
+        int threads = DEFAULT_THREADS;
+        int port = DEFAULT_PORT;
+        String url = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--rate") && i + 1 < args.length) {
+                rate = Double.parseDouble(args[++i]);
+                if (!(rate > 0)) {
+                    throw new IllegalArgumentException("--rate should be positive");
+                }
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+                if (threads < 1) {
+                    throw new IllegalArgumentException("--threads should be positive");
+                }
+            } else if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--url") && i + 1 < args.length) {
+                url = args[++i];
+            } else if (!args[i].startsWith("--")) {
+                logs.addAll(logFiles(new File(args[i])));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        List<String[]> queries = readQueries(logs);
+        if (queries.isEmpty()) {
+            System.out.println("No queries to replay");
+            return;
+        }
+
+        ConfigurableApplicationContext application = null;
+        if (url == null) {
+            application = SpringApplication.run(CampusPathsApplication.class,
+                    "--server.port=" + port);
+            url = "http://localhost:" + port;
+        }
+        try {
+            replay(queries, url, rate, threads);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    /**
+     * Return the log files a path names
+     * @param path a log file, or a directory of log files
+     * @return "path" if it is a file, or else the log files in it in time order
+     */
+    private static List<File> logFiles(File path) {
+        if (!path.isDirectory()) {
+            return Collections.singletonList(path);
+        }
+        File[] files = path.listFiles((dir, name) -> name.startsWith(QueryLogRecorder.FILE_PREFIX)
+                && name.endsWith(QueryLogRecorder.FILE_SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Read the queries of logs
+     * @param logs the log files, in time order
+     * @throws IOException if a log cannot be read
+     * @return the fields of every line of the logs, in order
+     */
+    private static List<String[]> readQueries(List<File> logs) throws IOException {
+        List<String[]> queries = new ArrayList<>();
+        for (File log : logs) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(log), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields.length < 4) {
+                        throw new IllegalArgumentException("Malformed query in " + log + ": "
+                                + line);
+                    }
+                    queries.add(fields);
+                }
+            }
+        }
+        // logs from several servers may interleave, so keep ties in file order
+        queries.sort(Comparator.comparingLong(fields -> Long.parseLong(fields[0])));
+        return queries;
+    }
+
+    /**
+     * Send every query when it is due and print a report once all are answered
+     * @param queries the fields of the logged queries, in time order
+     * @param url the base URL of the server
+     * @param rate how many times faster than logged to send the queries
+     * @param threads the number of threads sending queries
+     * @throws InterruptedException if interrupted while waiting for the last answers
+     */
+    private static void replay(List<String[]> queries, String url, double rate, int threads)
+            throws InterruptedException {
+        LatencyHistogram serviceTimes = new LatencyHistogram();
+        LatencyHistogram responseTimes = new LatencyHistogram();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        ExecutorService senders = Executors.newFixedThreadPool(threads);
+        long first = Long.parseLong(queries.get(0)[0]);
+        long begin = System.nanoTime();
+        for (String[] fields : queries) {
+            long due = begin + (long) ((Long.parseLong(fields[0]) - first)
+                    * TimeUnit.MILLISECONDS.toNanos(1) / rate);
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            String query = url + "/buildingLocation?start=" + encode(fields[1])
+                    + "&end=" + encode(fields[2]) + "&tolerance=" + encode(fields[3])
+                    + (fields.length > 6 ? "&map=" + encode(fields[6]) : "");
+            senders.execute(() -> {
+                long sent = System.nanoTime();
+                int status = send(query);
+                long answered = System.nanoTime();
+                serviceTimes.record(answered - sent);
+                responseTimes.record(answered - due);
+                statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            });
+        }
+        senders.shutdown();
+        senders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        double loggedSeconds = (Long.parseLong(queries.get(queries.size() - 1)[0]) - first) / 1e3;
+
+        System.out.printf("%d queries logged over %.1f s, replayed at %.2fx in %.1f s: "
+                + "%.0f queries/s%n", queries.size(), loggedSeconds, rate, seconds,
+                queries.size() / seconds);
+        System.out.println("status codes: " + new TreeMap<>(statuses));
+        System.out.println("service time:  " + serviceTimes.summary());
+        System.out.println("response time: " + responseTimes.summary());
+    }
+
+    /**
+     * Send one query and read its answer
+     * @param query the URL of the query
+     * @return the HTTP status of the answer, or -1 if there was none
+     */
+    private static int send(String query) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(query).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream()
+                    : connection.getErrorStream();
+            if (body != null) {
+                // read the whole answer so the connection can be reused
+                try (InputStream in = body) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Encode a query parameter
+     * @param value the value of the parameter
+     * @return "value" encoded for a URL
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RouteOverlay draws a route onto transparent tiles that line up with the tiles of a
+ * TilePyramid, so that a client showing map tiles can lay the route over them without
+ * drawing it itself. The route is drawn the same width at every zoom level, in the colors
+ * the web client uses, with a marker at each end.
+ */
+public final class RouteOverlay {
+    // No abstract function because it only has static methods
+
+    /** the width of the route line, in tile pixels */
+    private static final float LINE_WIDTH = 4f;
+
+    /** the radius of the markers at the ends of the route, in tile pixels */
+    private static final double MARKER_RADIUS = 6.0;
+
+    /** the color of the route line */
+    private static final Color LINE_COLOR = Color.BLUE;
+
+    /** the color of the markers */
+    private static final Color MARKER_COLOR = Color.RED;
+
+    /** the PNG of an empty tile of every size drawn so far, keyed by size */
+    private static final Map<Integer, byte[]> EMPTY_TILES = new ConcurrentHashMap<>();
+
+    /**
+     * Render the part of a route within one tile
+     * @param route the sub-paths of the route, in order, in full size image coordinates
+     * @param pyramid the pyramid the tile belongs to
+     * @param z the zoom level of the tile
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @spec.requires {@code pyramid.contains(z, x, y)}
+     * @return the tile as a PNG with a transparent background, empty if "route" is empty
+     * or does not cross the tile; the empty PNG is shared and must not be modified
+     */
+    public static byte[] render(List<Graph<Coordinates, Double>.Edge> route, TilePyramid pyramid,
+                                int z, int x, int y) {
+        int size = pyramid.getTileSize();
+        double scale = pyramid.scale(z);
+        double left = (double) x * size * scale;
+        double top = (double) y * size * scale;
+        if (route.isEmpty()) {
+            return EMPTY_TILES.computeIfAbsent(size, RouteOverlay::emptyTile);
+        }
+        Path2D.Double line = new Path2D.Double();
+        Coordinates first = route.get(0).getStart();
+        line.moveTo((first.getX() - left) / scale, (first.getY() - top) / scale);
+        for (Graph<Coordinates, Double>.Edge edge : route) {
+            Coordinates to = edge.getDestination();
+            line.lineTo((to.getX() - left) / scale, (to.getY() - top) / scale);
+        }
+        Coordinates last = route.get(route.size() - 1).getDestination();
+        BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setStroke(new BasicStroke(LINE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        // the route usually crosses a few tiles out of many, and the rest are all the same
+        if (!g.hit(new Rectangle(0, 0, size, size), line, true)
+                && !near(first, left, top, scale, size) && !near(last, left, top, scale, size)) {
+            g.dispose();
+            return EMPTY_TILES.computeIfAbsent(size, RouteOverlay::emptyTile);
+        }
+        g.setColor(LINE_COLOR);
+        g.draw(line);
+        g.setColor(MARKER_COLOR);
+        for (Coordinates end : new Coordinates[] {first, last}) {
+            g.fill(new Ellipse2D.Double((end.getX() - left) / scale - MARKER_RADIUS,
+                    (end.getY() - top) / scale - MARKER_RADIUS, 2 * MARKER_RADIUS,
+                    2 * MARKER_RADIUS));
+        }
+        g.dispose();
+        return encode(tile);
+    }
+
+    /**
+     * Return an empty tile
+     * @param size the side of the tile, in pixels
+     * @return the PNG of a transparent size x size tile
+     */
+    private static byte[] emptyTile(int size) {
+        return encode(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    /**
+     * Encode a tile as a PNG
+     * @param tile the tile
+     * @return the bytes of the PNG of "tile"
+     */
+    private static byte[] encode(BufferedImage tile) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(tile, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Return whether the marker at a point reaches into a tile
+     * @param point the point, in full size image coordinates
+     * @param left the left edge of the tile, in full size image coordinates
+     * @param top the top edge of the tile, in full size image coordinates
+     * @param scale how many full size pixels one tile pixel covers
+     * @param size the side of the tile, in tile pixels
+     * @return true if the marker drawn at "point" overlaps the tile
+     */
+    private static boolean near(Coordinates point, double left, double top, double scale,
+                                int size) {
+        double px = (point.getX() - left) / scale;
+        double py = (point.getY() - top) / scale;
+        return px > -MARKER_RADIUS && px < size + MARKER_RADIUS
+                && py > -MARKER_RADIUS && py < size + MARKER_RADIUS;
+    }
+}
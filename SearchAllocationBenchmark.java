@@ -0,0 +1,72 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * SearchAllocationBenchmark measures how many bytes CampusMapModel.findPath allocates per
+ * query in steady state, to check that searches only allocate their result. It runs every
+ * pair of buildings through findPath, first to warm up the JIT and the workspace pool and
+ * then while counting the bytes the thread allocates, and prints the average bytes and
+ * time per query next to the average number of edges in a result.
+ *
+ * Usage: java SearchAllocationBenchmark [rounds]
+ */
+public class SearchAllocationBenchmark {
+    // No abstract function because it only has static methods
+
+    /** the number of warm-up rounds over all pairs of buildings */
+    private static final int WARM_UP_ROUNDS = 5;
+
+    /**
+     * Main method. Runs the benchmark and prints the results to the console
+     * @param args optionally the number of measured rounds over all pairs of buildings
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        CampusMapModel model = new CampusMapModel();
+        List<String> names = new ArrayList<>();
+        for (Building building : model.getBuildings()) {
+            names.add(building.getShortName());
+        }
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            runRound(model, names);
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long edges = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long timeBefore = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            edges += runRound(model, names);
+        }
+        long time = System.nanoTime() - timeBefore;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        long queries = (long) rounds * names.size() * names.size();
+        System.out.println("queries:           " + queries);
+        System.out.println("bytes per query:   " + bytes / queries);
+        System.out.println("edges per result:  " + edges / queries);
+        System.out.println("micros per query:  " + time / 1000 / queries);
+    }
+
+    /**
+     * Find the shortest path between every pair of buildings once
+     * @param model the model to query
+     * @param names the short names of all buildings
+     * @return the total number of edges in all the results
+     */
+    private static long runRound(CampusMapModel model, List<String> names) {
+        long edges = 0;
+        for (String start : names) {
+            for (String end : names) {
+                List<Graph<Coordinates, Double>.Edge> path = model.findPath(start, end);
+                if (path != null) {
+                    edges += path.size();
+                }
+            }
+        }
+        return edges;
+    }
+}
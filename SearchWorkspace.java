@@ -0,0 +1,257 @@
+import java.util.Arrays;
+
+/**
+ * SearchWorkspace is the reusable state of one Dijkstra search over a CompactGraph: the
+ * tentative distance and tree edge of every node, a binary min-heap of the discovered but
+ * unsettled nodes, and the settled nodes in the order they were settled. All arrays are
+ * sized to the node count once; every entry carries the generation it was written in, so
+ * starting a new search only bumps the generation instead of clearing the arrays.
+ */
+public final class SearchWorkspace {
+
+    /** the tentative distance of every node discovered in this generation */
+    private final double[] distance;
+
+    /** the tree edge of every node discovered in this generation, -1 for the root */
+    private final int[] parentEdge;
+
+    /** the generation each node was last discovered in */
+    private final int[] stamp;
+
+    /** the heap position of every discovered node, or -1 once it is settled */
+    private final int[] heapIndex;
+
+    /** the binary min-heap of unsettled nodes, ordered by distance */
+    private final int[] heap;
+
+    /** the number of nodes in heap */
+    private int heapSize;
+
+    /** the settled nodes in the order they were settled */
+    private final int[] settled;
+
+    /** the number of nodes in settled */
+    private int settledCount;
+
+    /** the current generation */
+    private int generation;
+
+    // Abstract Function:
+    // Each SearchWorkspace w holds one search. A node v is discovered if
+    // stamp[v] == generation; then distance[v] is its best known distance and
+    // parentEdge[v] the edge it was reached by. A discovered node is settled if
+    // heapIndex[v] == -1, otherwise it waits at heap[heapIndex[v]]. settled[0..settledCount)
+    // lists the settled nodes in order.
+    //
+    // Rep Invariant:
+    // all arrays have the node count as length && generation >= 1 &&
+    // 0 <= heapSize && 0 <= settledCount && heapSize + settledCount <= node count &&
+    // forall 0 < i < heapSize, distance[heap[(i - 1) / 2]] <= distance[heap[i]]
+
+    /**
+     * Constructs a workspace for graphs with the given number of nodes
+     * @param nodeCount the number of nodes of the graphs this workspace searches
+     * @spec.requires {@code nodeCount >= 0}
+     * @spec.effects Constructs an empty workspace
+     */
+    public SearchWorkspace(int nodeCount) {
+        this.distance = new double[nodeCount];
+        this.parentEdge = new int[nodeCount];
+        this.stamp = new int[nodeCount];
+        this.heapIndex = new int[nodeCount];
+        this.heap = new int[nodeCount];
+        this.settled = new int[nodeCount];
+        this.generation = 1;
+    }
+
+    /**
+     * Return the number of nodes this workspace has room for
+     * @return the node count this workspace was made for
+     */
+    public int capacity() {
+        return stamp.length;
+    }
+
+    /**
+     * Forget the current search in constant time
+     * @spec.modifies this
+     * @spec.effects no node is discovered
+     */
+    public void reset() {
+        heapSize = 0;
+        settledCount = 0;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Checks if the given node has been discovered by the current search
+     * @param v the node to check
+     * @return true if "v" has a tentative or final distance
+     */
+    public boolean isDiscovered(int v) {
+        return stamp[v] == generation;
+    }
+
+    /**
+     * Checks if the distance of the given node is final
+     * @param v the node to check
+     * @return true if "v" has been settled
+     */
+    public boolean isSettled(int v) {
+        return stamp[v] == generation && heapIndex[v] < 0;
+    }
+
+    /**
+     * Return the best known distance of the given node
+     * @param v the node to look up
+     * @return the distance of "v", or positive infinity if it is not discovered
+     */
+    public double getDistance(int v) {
+        return stamp[v] == generation ? distance[v] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return the edge the given node was reached by
+     * @param v the node to look up
+     * @spec.requires {@code isDiscovered(v)}
+     * @return the number of the tree edge of "v", or -1 if "v" is the root
+     */
+    public int getParentEdge(int v) {
+        return parentEdge[v];
+    }
+
+    /**
+     * Return the number of settled nodes
+     * @return the number of nodes whose distance is final
+     */
+    public int settledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Return the i-th node that was settled
+     * @param i the position in settling order
+     * @spec.requires {@code 0 <= i < settledCount()}
+     * @return the node settled i-th
+     */
+    public int settledNode(int i) {
+        return settled[i];
+    }
+
+    /**
+     * Checks if no discovered node is waiting to be settled
+     * @return true if the heap is empty
+     */
+    public boolean isHeapEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Return the smallest distance of an unsettled node
+     * @spec.requires {@code !isHeapEmpty()}
+     * @return the distance of the next node pollMin() would settle
+     */
+    public double peekMinDistance() {
+        return distance[heap[0]];
+    }
+
+    /**
+     * Record that "v" can be reached at distance "d" by edge "edge", if that is better
+     * than what is known
+     * @param v the node reached
+     * @param d the distance "v" is reached at
+     * @param edge the edge "v" is reached by, or -1 for the root
+     * @spec.requires "v" is not settled
+     * @spec.modifies this
+     * @return true if the distance of "v" improved
+     */
+    public boolean offer(int v, double d, int edge) {
+        if (stamp[v] != generation) {
+            stamp[v] = generation;
+            distance[v] = d;
+            parentEdge[v] = edge;
+            heapIndex[v] = heapSize;
+            heap[heapSize++] = v;
+            siftUp(heapIndex[v]);
+            return true;
+        }
+        if (d < distance[v]) {
+            distance[v] = d;
+            parentEdge[v] = edge;
+            siftUp(heapIndex[v]);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Settle and return the unsettled node with the smallest distance
+     * @spec.requires {@code !isHeapEmpty()}
+     * @spec.modifies this
+     * @return the node that was settled
+     */
+    public int pollMin() {
+        int v = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        heapIndex[v] = -1;
+        settled[settledCount++] = v;
+        return v;
+    }
+
+    /**
+     * Move the node at heap position i up until its parent is not farther
+     * @param i the heap position to fix
+     */
+    private void siftUp(int i) {
+        int v = heap[i];
+        double d = distance[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (distance[p] <= d) {
+                break;
+            }
+            heap[i] = p;
+            heapIndex[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * Move the node at heap position i down until no child is closer
+     * @param i the heap position to fix
+     */
+    private void siftDown(int i) {
+        int v = heap[i];
+        double d = distance[v];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && distance[heap[child + 1]] < distance[heap[child]]) {
+                child++;
+            }
+            int c = heap[child];
+            if (distance[c] >= d) {
+                break;
+            }
+            heap[i] = c;
+            heapIndex[c] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayDeque;
+
+/**
+ * SearchWorkspacePool lends SearchWorkspaces sized for one graph to concurrent searches.
+ * A workspace is created only when every existing one is in use, so in steady state the
+ * pool holds one workspace per concurrent search and searches allocate no search state.
+ * The idle workspaces are kept in an ArrayDeque rather than a concurrent queue because
+ * lending one out and taking it back then allocates nothing.
+ *
+ * At most maxIdle workspaces are kept idle; ones given back beyond that are dropped for the
+ * garbage collector, so a burst of concurrent searches does not pin its peak memory for
+ * the life of the pool.
+ */
+public final class SearchWorkspacePool {
+
+    /** the number of nodes every workspace has room for */
+    private final int nodeCount;
+
+    /** the largest number of idle workspaces kept */
+    private final int maxIdle;
+
+    /** the workspaces that are not lent out, guarded by this */
+    private final ArrayDeque<SearchWorkspace> idle;
+
+    // Abstract Function:
+    // Each SearchWorkspacePool p holds the idle workspaces for graphs of p.nodeCount nodes.
+    //
+    // Rep Invariant:
+    // nodeCount >= 0 && maxIdle > 0 && idle != null && idle.size() <= maxIdle &&
+    // forall w in idle, w.capacity() == nodeCount
+
+    /**
+     * Constructs an empty pool keeping one idle workspace per processor, as many as the
+     * searches that can run at once
+     * @param nodeCount the number of nodes of the graph the workspaces are for
+     * @spec.requires {@code nodeCount >= 0}
+     * @spec.effects Constructs a pool with no idle workspaces
+     */
+    public SearchWorkspacePool(int nodeCount) {
+        this(nodeCount, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty pool
+     * @param nodeCount the number of nodes of the graph the workspaces are for
+     * @param maxIdle the largest number of idle workspaces kept
+     * @spec.requires {@code nodeCount >= 0 && maxIdle > 0}
+     * @spec.effects Constructs a pool with no idle workspaces
+     */
+    public SearchWorkspacePool(int nodeCount, int maxIdle) {
+        if (maxIdle <= 0) {
+            throw new IllegalArgumentException("maxIdle should be positive");
+        }
+        this.nodeCount = nodeCount;
+        this.maxIdle = maxIdle;
+        this.idle = new ArrayDeque<>();
+    }
+
+    /**
+     * Borrow a reset workspace. It must be given back with release() when the search is over.
+     * @return a workspace with no discovered nodes
+     */
+    public SearchWorkspace borrow() {
+        SearchWorkspace workspace;
+        synchronized (this) {
+            workspace = idle.pollFirst();
+        }
+        if (workspace == null) {
+            workspace = new SearchWorkspace(nodeCount);
+        }
+        workspace.reset();
+        return workspace;
+    }
+
+    /**
+     * Give back a borrowed workspace
+     * @param workspace the workspace to give back
+     * @spec.requires "workspace" was borrowed from this pool and is no longer used
+     * @spec.modifies this
+     * @spec.effects "workspace" can be lent again, unless maxIdle workspaces are already
+     * idle, in which case it is dropped
+     */
+    public void release(SearchWorkspace workspace) {
+        if (workspace.capacity() != nodeCount) {
+            throw new IllegalArgumentException("workspace belongs to another pool");
+        }
+        synchronized (this) {
+            if (idle.size() < maxIdle) {
+                idle.addFirst(workspace);
+            }
+        }
+    }
+}
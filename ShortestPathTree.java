@@ -0,0 +1,284 @@
+import java.util.*;
+
+/**
+ * ShortestPathTree is a resumable single-source Dijkstra search over a CompactGraph. The
+ * tree grows from its root either along the direction of the edges (forward) or against
+ * it (backward, so that every distance is the length of the path from a node to the root).
+ * The search can be continued after it stops, so a caller can first look for a target and
+ * then widen the same tree to a larger distance without searching the settled part again.
+ *
+ * The search state lives in a SearchWorkspace borrowed from a pool, so a tree allocates
+ * nothing while it searches. A tree must be closed when it is no longer needed to give
+ * its workspace back; after that it must not be used.
+ */
+public final class ShortestPathTree<N> implements AutoCloseable {
+
+    /** the graph that is searched, already reversed for a backward tree */
+    private final CompactGraph<N> graph;
+
+    /** the pool the workspace came from */
+    private final SearchWorkspacePool pool;
+
+    /** the search state, or null once this is closed */
+    private SearchWorkspace workspace;
+
+    /** the number of the node this tree grows from */
+    private final int root;
+
+    /** true if the tree grows against the direction of the edges */
+    private final boolean backward;
+
+    // Abstract Function:
+    // Each ShortestPathTree t represents the shortest paths between t.graph.node(root) and
+    // every node settled in t.workspace. For a forward tree the paths start at the root,
+    // for a backward tree they end at it.
+    //
+    // Rep Invariant:
+    // graph != null && pool != null && 0 <= root < graph.nodeCount() &&
+    // (workspace == null || workspace.isDiscovered(root))
+
+    /**
+     * Constructs a tree that only knows about its root
+     * @param graph the graph to search, already reversed for a backward tree
+     * @param pool the pool to borrow a workspace from
+     * @param root the number of the node the tree grows from
+     * @param backward true if the tree grows against the direction of the edges
+     * @spec.requires {@code 0 <= root < graph.nodeCount()}
+     * @spec.effects Constructs an unexplored tree rooted at "root"
+     */
+    private ShortestPathTree(CompactGraph<N> graph, SearchWorkspacePool pool, int root,
+                             boolean backward) {
+        this.graph = graph;
+        this.pool = pool;
+        this.root = root;
+        this.backward = backward;
+        this.workspace = pool.borrow();
+        this.workspace.offer(root, 0.0, -1);
+        checkRep();
+    }
+
+    /**
+     * Return a tree that grows from "source" along the direction of the edges
+     * @param graph the graph to search
+     * @param pool the pool to borrow a workspace from, made for "graph"
+     * @param source the node the paths start from
+     * @param <N> the node type of the graph
+     * @spec.requires "source" is a node of "graph"
+     * @return an unexplored forward tree rooted at "source"
+     */
+    public static <N> ShortestPathTree<N> from(CompactGraph<N> graph, SearchWorkspacePool pool,
+                                               N source) {
+        int v = graph.indexOf(source);
+        if (v < 0) {
+            throw new IllegalArgumentException("node is not in the graph: " + source);
+        }
+        return new ShortestPathTree<>(graph, pool, v, false);
+    }
+
+    /**
+     * Return a tree that grows from "target" against the direction of the edges
+     * @param graph the graph to search
+     * @param pool the pool to borrow a workspace from, made for "graph"
+     * @param target the node the paths end at
+     * @param <N> the node type of the graph
+     * @spec.requires "target" is a node of "graph"
+     * @return an unexplored backward tree rooted at "target"
+     */
+    public static <N> ShortestPathTree<N> to(CompactGraph<N> graph, SearchWorkspacePool pool,
+                                             N target) {
+        int v = graph.indexOf(target);
+        if (v < 0) {
+            throw new IllegalArgumentException("node is not in the graph: " + target);
+        }
+        return new ShortestPathTree<>(graph.reverse(), pool, v, true);
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (graph != null && pool != null);
+        assert (0 <= root && root < graph.nodeCount());
+    }
+
+    /**
+     * Return the workspace, making sure this tree has not been closed
+     * @return the workspace of this tree
+     */
+    private SearchWorkspace state() {
+        SearchWorkspace current = workspace;
+        if (current == null) {
+            throw new IllegalStateException("the tree has been closed");
+        }
+        return current;
+    }
+
+    /**
+     * Settle nodes in order of distance until "target" is settled or nothing is left
+     * @param target the node to search for
+     * @spec.modifies this
+     * @spec.effects settles every node closer to the root than "target", and "target" itself
+     * @return true if "target" is settled
+     */
+    public boolean searchTo(N target) {
+        int t = graph.indexOf(target);
+        if (t < 0) {
+            return false;
+        }
+        SearchWorkspace ws = state();
+        while (!ws.isSettled(t) && settleNext(ws, Double.POSITIVE_INFINITY)) {
+            // keep settling
+        }
+        return ws.isSettled(t);
+    }
+
+    /**
+     * Settle every node whose distance from the root is at most "budget"
+     * @param budget the largest distance to settle
+     * @spec.modifies this
+     * @spec.effects settles every node within "budget" of the root
+     */
+    public void searchWithin(double budget) {
+        SearchWorkspace ws = state();
+        while (settleNext(ws, budget)) {
+            // keep settling
+        }
+    }
+
+    /**
+     * Settle the closest unsettled node if it lies within "budget"
+     * @param ws the workspace of this tree
+     * @param budget the largest distance to settle
+     * @return true if a node was settled
+     */
+    private boolean settleNext(SearchWorkspace ws, double budget) {
+        if (ws.isHeapEmpty() || ws.peekMinDistance() > budget) {
+            return false;
+        }
+        int v = ws.pollMin();
+        double d = ws.getDistance(v);
+        for (int e = graph.firstEdge(v), end = graph.endEdge(v); e < end; e++) {
+            int w = graph.target(e);
+            if (!ws.isSettled(w)) {
+                ws.offer(w, d + graph.weight(e), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the node this tree grows from
+     * @return the root of this tree
+     */
+    public N getRoot() {
+        return graph.node(root);
+    }
+
+    /**
+     * Checks if the shortest path between the root and the given node is known
+     * @param node the node to check
+     * @return true if "node" has been settled
+     */
+    public boolean isSettled(N node) {
+        int v = graph.indexOf(node);
+        return v >= 0 && state().isSettled(v);
+    }
+
+    /**
+     * Return the length of the shortest path between the root and the given node
+     * @param node the node to look up
+     * @return the distance of "node" if it is settled, positive infinity otherwise
+     */
+    public double getDistance(N node) {
+        int v = graph.indexOf(node);
+        SearchWorkspace ws = state();
+        return v >= 0 && ws.isSettled(v) ? ws.getDistance(v) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return the number of nodes whose shortest paths are known
+     * @return the number of settled nodes
+     */
+    public int getSettledCount() {
+        return state().settledCount();
+    }
+
+    /**
+     * Return the i-th node that was settled
+     * @param i the position in settling order
+     * @spec.requires {@code 0 <= i < getSettledCount()}
+     * @return the node settled i-th, which is the root for i == 0
+     */
+    public N getSettledNode(int i) {
+        return graph.node(state().settledNode(i));
+    }
+
+    /**
+     * Return all the nodes whose shortest paths are known
+     * @return a new List of the settled nodes in order of distance
+     */
+    public List<N> getSettledNodes() {
+        SearchWorkspace ws = state();
+        List<N> nodes = new ArrayList<>(ws.settledCount());
+        for (int i = 0; i < ws.settledCount(); i++) {
+            nodes.add(graph.node(ws.settledNode(i)));
+        }
+        return nodes;
+    }
+
+    /**
+     * Return the edges of the shortest path between the root and the given node in
+     * walking order: from the root to "node" for a forward tree and from "node" to the
+     * root for a backward tree
+     * @param node the other end of the path
+     * @spec.requires {@code isSettled(node)}
+     * @return a new List of the edges of the path, empty if "node" is the root
+     */
+    public List<Graph<N, Double>.Edge> getPath(N node) {
+        int[] edges = getPathEdges(node);
+        List<Graph<N, Double>.Edge> path = new ArrayList<>(edges.length);
+        for (int e : edges) {
+            path.add(graph.edge(e));
+        }
+        return path;
+    }
+
+    /**
+     * Return the numbers of the edges of the shortest path between the root and the given
+     * node, in the same order as getPath(node). For a backward tree these are edges of the
+     * reversed graph.
+     * @param node the other end of the path
+     * @spec.requires {@code isSettled(node)}
+     * @return a new array of the edge numbers of the path, empty if "node" is the root
+     */
+    public int[] getPathEdges(N node) {
+        int v = graph.indexOf(node);
+        SearchWorkspace ws = state();
+        if (v < 0 || !ws.isSettled(v)) {
+            throw new IllegalArgumentException("node is not settled: " + node);
+        }
+        int length = 0;
+        for (int u = v; u != root; u = graph.source(ws.getParentEdge(u))) {
+            length++;
+        }
+        int[] edges = new int[length];
+        int i = backward ? 0 : length - 1;
+        for (int u = v; u != root; u = graph.source(ws.getParentEdge(u))) {
+            edges[i] = ws.getParentEdge(u);
+            i += backward ? 1 : -1;
+        }
+        return edges;
+    }
+
+    /**
+     * Give the workspace of this tree back to its pool
+     * @spec.modifies this
+     * @spec.effects this can no longer be used
+     */
+    @Override
+    public void close() {
+        SearchWorkspace current = workspace;
+        if (current != null) {
+            workspace = null;
+            pool.release(current);
+        }
+    }
+}
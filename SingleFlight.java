@@ -0,0 +1,224 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight makes concurrent identical computations share one run. The first caller
+ * for a key computes the value on its own thread; callers that ask for the same key while
+ * it is running wait for that value instead of computing it again. Once the computation
+ * ends its key is forgotten, so later callers compute afresh; SingleFlight is not a cache.
+ *
+ * At most maxWaiters callers may wait on one computation. Callers beyond that are rejected
+ * at once, so a slow computation cannot tie up an unbounded number of threads.
+ */
+public final class SingleFlight<K, V> {
+
+    /** the computations running now, by key */
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    /** the largest number of callers that may wait on one computation */
+    private final int maxWaiters;
+
+    /** the number of values computed */
+    private final LongAdder computed = new LongAdder();
+
+    /** the number of values shared with a caller waiting on another's computation */
+    private final LongAdder coalesced = new LongAdder();
+
+    /** the number of callers turned away because too many were waiting */
+    private final LongAdder rejected = new LongAdder();
+
+    // Abstract Function:
+    // Each SingleFlight s is the set of keys whose values are being computed,
+    // s.flights.keySet(), each with the callers waiting for it, and the counts of computed,
+    // coalesced and rejected calls so far.
+    //
+    // Rep Invariant:
+    // flights != null && maxWaiters >= 0 &&
+    // every Flight in flights has between 0 and maxWaiters + 1 waiters
+
+    /**
+     * @param maxWaiters the largest number of callers that may wait on one computation
+     * @spec.requires {@code maxWaiters >= 0}
+     * @spec.effects Constructs a SingleFlight with no computations running
+     */
+    public SingleFlight(int maxWaiters) {
+        if (maxWaiters < 0) {
+            throw new IllegalArgumentException("maxWaiters should not be negative");
+        }
+        this.maxWaiters = maxWaiters;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (flights != null);
+        assert (maxWaiters >= 0);
+    }
+
+    /**
+     * Return the value for a key, computing it unless the same key is already being
+     * computed, in which case wait for that computation instead
+     * @param key the key of the value
+     * @param computation computes the value of "key"
+     * @spec.requires the values of a key are immutable and do not depend on the caller, as
+     * one value may be handed to several callers
+     * @throws RejectedExecutionException if maxWaiters callers are already waiting for
+     * "key"
+     * @return the value of "key", computed by this or a concurrent call
+     */
+    public @Nullable V execute(K key, Supplier<@Nullable V> computation) {
+        Flight<V> mine = new Flight<>();
+        Flight<V> flight = flights.putIfAbsent(key, mine);
+        if (flight == null) {
+            computed.increment();
+            try {
+                V value = computation.get();
+                mine.result.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                flights.remove(key, mine);
+            }
+        }
+
+        if (flight.waiters.incrementAndGet() > maxWaiters) {
+            flight.waiters.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Too many identical requests waiting");
+        }
+        try {
+            V value = flight.result.join();
+            coalesced.increment();
+            return value;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } finally {
+            flight.waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return the counts of calls so far and the computations running now
+     * @return a Stats of this SingleFlight
+     */
+    public Stats getStats() {
+        int waiting = 0;
+        for (Flight<V> flight : flights.values()) {
+            waiting += flight.waiters.get();
+        }
+        return new Stats(computed.sum(), coalesced.sum(), rejected.sum(), flights.size(),
+                waiting);
+    }
+
+    /**
+     * Flight is a running computation and the callers waiting for it
+     */
+    private static final class Flight<V> {
+
+        /** completed with the value, or the exception, of the computation */
+        final CompletableFuture<@Nullable V> result = new CompletableFuture<>();
+
+        /** the number of callers waiting for result */
+        final AtomicInteger waiters = new AtomicInteger();
+    }
+
+    /**
+     * Stats is an immutable snapshot of the counters of a SingleFlight
+     */
+    public static final class Stats {
+
+        /** the number of values computed */
+        private final long computed;
+
+        /** the number of values shared with a waiting caller */
+        private final long coalesced;
+
+        /** the number of callers turned away */
+        private final long rejected;
+
+        /** the number of computations running */
+        private final int inFlight;
+
+        /** the number of callers waiting */
+        private final int waiting;
+
+        // Abstract Function:
+        // Each Stats s reports s.computed computed values, s.coalesced shared ones and
+        // s.rejected rejected callers, and s.inFlight computations with s.waiting waiters
+        // running when it was taken.
+        //
+        // Rep Invariant:
+        // every field >= 0
+
+        /**
+         * @param computed the number of values computed
+         * @param coalesced the number of values shared with a waiting caller
+         * @param rejected the number of callers turned away
+         * @param inFlight the number of computations running
+         * @param waiting the number of callers waiting
+         * @spec.effects Constructs a Stats with the given counts
+         */
+        Stats(long computed, long coalesced, long rejected, int inFlight, int waiting) {
+            this.computed = computed;
+            this.coalesced = coalesced;
+            this.rejected = rejected;
+            this.inFlight = inFlight;
+            this.waiting = waiting;
+        }
+
+        /**
+         * Return the number of values computed
+         * @return the number of calls that ran their computation
+         */
+        public long getComputed() {
+            return computed;
+        }
+
+        /**
+         * Return the number of values shared with a waiting caller
+         * @return the number of calls answered by another call's computation
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        /**
+         * Return the number of callers turned away
+         * @return the number of calls rejected because too many were waiting
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Return the number of computations running
+         * @return the number of keys being computed when this was taken
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Return the number of callers waiting
+         * @return the number of calls waiting for another's computation when this was taken
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+    }
+}
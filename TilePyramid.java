@@ -0,0 +1,292 @@
+import org.checkerframework.checker.nullness.qual.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * TilePyramid is a map image cut into square tiles at every zoom level, stored as files so
+ * that a client downloads only the tiles it shows, at the resolution it shows them. Level
+ * maxZoom has the image at full size, where one pixel is one unit of the map coordinates;
+ * every level below it halves the size, down to level 0 where the whole image fits in one
+ * tile. Tile (z, x, y) covers the pixels from (x * tileSize, y * tileSize) of level z; tiles
+ * at the right and bottom edges are padded with white to the full tile size.
+ *
+ * A pyramid directory holds the tiles as z/x/y.jpg and a PROPERTIES_FILE with the size of
+ * the image and of the tiles. Pyramids are built by build() or by running this class.
+ *
+ * Usage: java TilePyramid image-file pyramid-directory [tile-size]
+ */
+public final class TilePyramid {
+
+    /** the name of the file describing a pyramid */
+    public static final String PROPERTIES_FILE = "pyramid.properties";
+
+    /** the side of a tile in pixels when none is given */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /** the format of the tile files */
+    private static final String FORMAT = "jpg";
+
+    /** the directory holding the tiles */
+    private final File directory;
+
+    /** the width of the full size image, in pixels */
+    private final int width;
+
+    /** the height of the full size image, in pixels */
+    private final int height;
+
+    /** the side of a tile, in pixels */
+    private final int tileSize;
+
+    /** the level with the full size image */
+    private final int maxZoom;
+
+    // Abstract Function:
+    // Each TilePyramid p represents a width x height image scaled by 2^(z - maxZoom) at
+    // every level 0 <= z <= maxZoom and cut into tileSize x tileSize tiles, tile (z, x, y)
+    // being the file directory/z/x/y.jpg.
+    //
+    // Rep Invariant:
+    // directory != null && width > 0 && height > 0 && tileSize > 0 &&
+    // maxZoom is the smallest level >= 0 with max(width, height) <= tileSize * 2^maxZoom
+
+    /**
+     * @param directory the directory holding the tiles
+     * @param width the width of the full size image, in pixels
+     * @param height the height of the full size image, in pixels
+     * @param tileSize the side of a tile, in pixels
+     * @throws IllegalArgumentException if a size is not positive
+     * @spec.effects Constructs a TilePyramid of the tiles in "directory"
+     */
+    private TilePyramid(File directory, int width, int height, int tileSize) {
+        if (width <= 0 || height <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("The image and tile sizes should be positive");
+        }
+        this.directory = directory;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        int zoom = 0;
+        while ((long) tileSize << zoom < Math.max(width, height)) {
+            zoom++;
+        }
+        this.maxZoom = zoom;
+        checkRep();
+    }
+
+    /** Checks that the representation invariant holds (if any). */
+    private void checkRep() {
+        assert (directory != null && width > 0 && height > 0 && tileSize > 0);
+        assert ((long) tileSize << maxZoom >= Math.max(width, height));
+        assert (maxZoom == 0 || (long) tileSize << (maxZoom - 1) < Math.max(width, height));
+    }
+
+    /**
+     * Open a pyramid built earlier
+     * @param directory the directory of the pyramid
+     * @throws IOException if its PROPERTIES_FILE cannot be read
+     * @throws IllegalArgumentException if its PROPERTIES_FILE is malformed
+     * @return the TilePyramid in "directory"
+     */
+    public static TilePyramid open(File directory) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(
+                new File(directory, PROPERTIES_FILE)), StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        try {
+            return new TilePyramid(directory, Integer.parseInt(properties.getProperty("width")),
+                    Integer.parseInt(properties.getProperty("height")),
+                    Integer.parseInt(properties.getProperty("tileSize")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed " + PROPERTIES_FILE + " in "
+                    + directory);
+        }
+    }
+
+    /**
+     * Cut an image into a pyramid of tiles. Every level is the level above it scaled down
+     * by half, so each pixel averages four pixels of the level above.
+     * @param image the image file, in a format ImageIO reads
+     * @param directory the directory to write the pyramid to; created if it does not exist
+     * @param tileSize the side of a tile, in pixels
+     * @throws IOException if the image cannot be read or a tile cannot be written
+     * @return the TilePyramid written to "directory"
+     */
+    public static TilePyramid build(File image, File directory, int tileSize) throws IOException {
+        BufferedImage level = ImageIO.read(image);
+        if (level == null) {
+            throw new IOException("Cannot read the image " + image);
+        }
+        TilePyramid pyramid = new TilePyramid(directory, level.getWidth(), level.getHeight(),
+                tileSize);
+        for (int z = pyramid.maxZoom; z >= 0; z--) {
+            if (z < pyramid.maxZoom) {
+                level = half(level);
+            }
+            for (int x = 0; x < pyramid.columns(z); x++) {
+                File column = new File(directory, z + File.separator + x);
+                if (!column.isDirectory() && !column.mkdirs()) {
+                    throw new IOException("Cannot create " + column);
+                }
+                for (int y = 0; y < pyramid.rows(z); y++) {
+                    BufferedImage tile = new BufferedImage(tileSize, tileSize,
+                            BufferedImage.TYPE_INT_RGB);
+                    Graphics2D g = tile.createGraphics();
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, tileSize, tileSize);
+                    g.drawImage(level, -x * tileSize, -y * tileSize, null);
+                    g.dispose();
+                    if (!ImageIO.write(tile, FORMAT, new File(column, y + "." + FORMAT))) {
+                        throw new IOException("Cannot write " + FORMAT + " tiles");
+                    }
+                }
+            }
+        }
+        // written last, so that a pyramid whose build was cut short cannot be opened
+        Properties properties = new Properties();
+        properties.setProperty("width", String.valueOf(pyramid.width));
+        properties.setProperty("height", String.valueOf(pyramid.height));
+        properties.setProperty("tileSize", String.valueOf(tileSize));
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(
+                new File(directory, PROPERTIES_FILE)), StandardCharsets.UTF_8)) {
+            properties.store(out, "tile pyramid of " + image.getName());
+        }
+        return pyramid;
+    }
+
+    /**
+     * Return an image scaled down by half
+     * @param image the image to scale
+     * @return a new image of half the width and height of "image", rounded up
+     */
+    private static BufferedImage half(BufferedImage image) {
+        BufferedImage result = new BufferedImage((image.getWidth() + 1) / 2,
+                (image.getHeight() + 1) / 2, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, result.getWidth(), result.getHeight(), null);
+        g.dispose();
+        return result;
+    }
+
+    /**
+     * Return the file of a tile
+     * @param z the zoom level
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return the file of tile (z, x, y), or null if there is no such tile
+     */
+    public @Nullable File tile(int z, int x, int y) {
+        if (!contains(z, x, y)) {
+            return null;
+        }
+        File file = new File(directory, z + File.separator + x + File.separator + y + "."
+                + FORMAT);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Return whether a tile is part of this pyramid
+     * @param z the zoom level
+     * @param x the column of the tile
+     * @param y the row of the tile
+     * @return true if 0 <= z <= maxZoom and (x, y) is within the image at level z
+     */
+    public boolean contains(int z, int x, int y) {
+        return z >= 0 && z <= maxZoom && x >= 0 && x < columns(z) && y >= 0 && y < rows(z);
+    }
+
+    /**
+     * Return the number of columns of tiles at a level
+     * @param z the zoom level
+     * @spec.requires {@code 0 <= z <= maxZoom}
+     * @return the number of tiles across the image at level z
+     */
+    public int columns(int z) {
+        return (int) Math.ceil(width / (scale(z) * tileSize));
+    }
+
+    /**
+     * Return the number of rows of tiles at a level
+     * @param z the zoom level
+     * @spec.requires {@code 0 <= z <= maxZoom}
+     * @return the number of tiles down the image at level z
+     */
+    public int rows(int z) {
+        return (int) Math.ceil(height / (scale(z) * tileSize));
+    }
+
+    /**
+     * Return how many full size pixels one pixel of a level covers
+     * @param z the zoom level
+     * @spec.requires {@code 0 <= z <= maxZoom}
+     * @return 2^(maxZoom - z)
+     */
+    public double scale(int z) {
+        return (double) (1L << (maxZoom - z));
+    }
+
+    /**
+     * Return the width of the full size image
+     * @return the width of the image at level maxZoom, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Return the height of the full size image
+     * @return the height of the image at level maxZoom, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Return the side of a tile
+     * @return the width and height of every tile, in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Return the level with the full size image
+     * @return the highest zoom level
+     */
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Main method. Builds a pyramid and prints its size to the console
+     * @param args the image file, the pyramid directory and optionally the tile size
+     * @throws IOException if the image cannot be read or a tile cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java TilePyramid image-file pyramid-directory [tile-size]");
+            return;
+        }
+        int tileSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TILE_SIZE;
+        long begin = System.nanoTime();
+        TilePyramid pyramid = build(new File(args[0]), new File(args[1]), tileSize);
+        int tiles = 0;
+        for (int z = 0; z <= pyramid.maxZoom; z++) {
+            tiles += pyramid.columns(z) * pyramid.rows(z);
+        }
+        System.out.printf("%d x %d image cut into %d tiles on %d levels in %d ms%n",
+                pyramid.width, pyramid.height, tiles, pyramid.maxZoom + 1,
+                (System.nanoTime() - begin) / 1_000_000);
+    }
+}
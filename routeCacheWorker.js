@@ -0,0 +1,134 @@
+// The service worker registered by serviceWorker.js. It keeps the building list and
+// recent route answers of the campus map server in the Cache API, so that repeated
+// lookups are answered locally, and still answered when the network is down.
+//
+// Answers depend only on the server's map data, so they are cached under the server's
+// data version (from /dataVersion) and all of them are dropped when it changes. The
+// version is asked for at most once a minute; while the server cannot be reached, the
+// last version seen is used. At most MAX_ROUTES routes are kept, least recently used
+// ones are dropped first.
+
+const CACHE_PREFIX = 'campus-map-data-';
+
+// the paths of the answers that are cached
+const BUILDINGS_PATH = '/getBuildings';
+const ROUTE_PATH = '/buildingLocation';
+
+// the largest number of cached route answers
+const MAX_ROUTES = 200;
+
+// how often the data version is checked, in milliseconds
+const VERSION_CHECK_MILLIS = 60 * 1000;
+
+// how long to wait for the server before answering from the cache, in milliseconds
+const VERSION_TIMEOUT_MILLIS = 2000;
+
+// the last data version seen and when it was checked, per server origin
+const versions = {};
+
+self.addEventListener('install', () => {
+  self.skipWaiting();
+});
+
+self.addEventListener('activate', event => {
+  event.waitUntil(self.clients.claim());
+});
+
+self.addEventListener('fetch', event => {
+  const request = event.request;
+  if (request.method !== 'GET') {
+    return;
+  }
+  const url = new URL(request.url);
+  if (url.pathname === BUILDINGS_PATH || url.pathname === ROUTE_PATH) {
+    event.respondWith(answer(request, url));
+  }
+});
+
+// Answer a request from the cache of the current data version, or else from the server,
+// caching the server's answer if it is a success.
+async function answer(request, url) {
+  const version = await dataVersion(url.origin);
+  if (version == null) {
+    // the server has never been reached, so nothing can be cached yet
+    return fetch(request);
+  }
+  const cache = await caches.open(CACHE_PREFIX + version);
+  const cached = await cache.match(request);
+  if (cached) {
+    if (url.pathname === ROUTE_PATH) {
+      // put it back so that it is the most recently used
+      await cache.put(request, cached.clone());
+    }
+    return cached;
+  }
+  const response = await fetch(request);
+  if (response.ok) {
+    await cache.put(request, response.clone());
+    if (url.pathname === ROUTE_PATH) {
+      await evictRoutes(cache);
+    }
+  }
+  return response;
+}
+
+// Return the data version of a server, asking it if the last check is too old, or null if
+// it has never been reached. Caches of other versions are deleted when it changes.
+async function dataVersion(origin) {
+  const known = versions[origin];
+  if (known && Date.now() - known.checked < VERSION_CHECK_MILLIS) {
+    return known.version;
+  }
+  let version = null;
+  try {
+    const response = await fetchWithTimeout(origin + '/dataVersion', VERSION_TIMEOUT_MILLIS);
+    if (response.ok) {
+      version = (await response.text()).trim();
+    }
+  } catch (e) {
+    // offline or too slow: fall back to the last version seen
+  }
+  if (version == null) {
+    return known ? known.version : lastCachedVersion();
+  }
+  versions[origin] = {version: version, checked: Date.now()};
+  if (!known || known.version !== version) {
+    const names = await caches.keys();
+    await Promise.all(names
+      .filter(name => name.startsWith(CACHE_PREFIX) && name !== CACHE_PREFIX + version)
+      .map(name => caches.delete(name)));
+  }
+  return version;
+}
+
+// Return the version of the data cached by an earlier run of this worker, or null if
+// there is none.
+async function lastCachedVersion() {
+  const names = await caches.keys();
+  const name = names.find(cacheName => cacheName.startsWith(CACHE_PREFIX));
+  return name ? name.substring(CACHE_PREFIX.length) : null;
+}
+
+// Fetch a URL, failing if there is no answer within the given time.
+function fetchWithTimeout(url, millis) {
+  return new Promise((resolve, reject) => {
+    const timer = setTimeout(() => reject(new Error('timed out')), millis);
+    fetch(url, {cache: 'no-store'}).then(response => {
+      clearTimeout(timer);
+      resolve(response);
+    }, error => {
+      clearTimeout(timer);
+      reject(error);
+    });
+  });
+}
+
+// Delete the least recently used routes until at most MAX_ROUTES are cached. The keys of
+// a cache are in the order they were put, so the least recently used come first.
+async function evictRoutes(cache) {
+  const keys = await cache.keys();
+  const routes = keys.filter(key => new URL(key.url).pathname === ROUTE_PATH);
+  await Promise.all(routes
+    .slice(0, Math.max(routes.length - MAX_ROUTES, 0))
+    .map(key => cache.delete(key)));
+}